@@ -0,0 +1,279 @@
+import java.math.BigInteger;
+
+/**
+ *
+ * Turns a calculated answer into the text that is displayed.
+ *
+ * The answer is written into a char buffer that belongs to the formatter and is reused for every answer,
+ * so formatting an answer doesn't create any objects. toString() only makes a String when one is needed.
+ *
+ * Answers are written with the fewest digits that still parse back to exactly the same double, using the
+ * Schubfach algorithm by Raffaello Giulietti. Double.toString sometimes writes more digits than that.
+ * The layout is the same as Double.toString, except that answers that are whole numbers don't have ".0" at the end.
+ * For example, 8 is written "8", 0.1 + 0.2 is written "0.30000000000000004", and 1e20 is written "1.0E20".
+ *
+ * Dividing by zero gives the infinity sign, and answers that aren't a number, like the square root of a negative number, give "Error".
+ *
+ */
+
+public class AnswerFormatter {
+
+	// fields
+	public static final String INFINITY = "\u221E";   // - Displayed when the answer is too big for a double, like 1 / 0.
+	public static final String ERROR = "Error";   // - Displayed when the answer isn't a number.
+
+	private static final int K_MIN = -324;   // - Smallest and largest decimal exponents that Schubfach needs a power of ten for.
+	private static final int K_MAX = 292;
+	private static final long[] G1 = new long[K_MAX - K_MIN + 1];   // - High and low 63 bits of the 126 bit approximation of each power of ten.
+	private static final long[] G0 = new long[K_MAX - K_MIN + 1];
+	private static final long MASK_63 = (1L << 63) - 1;
+	private static final long C_MIN = 1L << 52;   // - Smallest significand of a normal double.
+	private static final int Q_MIN = -1074;   // - Smallest binary exponent of a double.
+
+	private final char[] buffer = new char[32];   // - Big enough for the longest answer, "-1.2345678901234567E-308".
+	private int length;
+	private double value;   // - The last formatted value, so the buffer can be written again.
+
+
+	// power of ten table
+	static {
+		for (int k = K_MIN; k <= K_MAX; k++) {   // - g = floor(10^-k * 2^-r) + 1, where r makes g exactly 126 bits long.
+			int r = flog2pow10(-k) - 125;
+			BigInteger g;
+			if (k <= 0) {
+				BigInteger pow = BigInteger.TEN.pow(-k);
+				g = r < 0 ? pow.shiftLeft(-r) : pow.shiftRight(r);
+			}
+			else {
+				g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+			}
+			g = g.add(BigInteger.ONE);
+			G1[k - K_MIN] = g.shiftRight(63).longValue();
+			G0[k - K_MIN] = g.longValue() & MASK_63;
+		}
+	}
+
+
+	// format method
+	public int format(double value) {   // - Writes the answer into the buffer and returns how many chars it used.
+		this.value = value;
+		length = 0;
+		if (Double.isNaN(value)) {
+			return append(ERROR);
+		}
+		if (Double.isInfinite(value)) {
+			if (value < 0) {
+				buffer[length++] = '-';
+			}
+			return append(INFINITY);
+		}
+
+		long longValue = (long) value;   // - Get rid of unnecessary decimals.
+		if (longValue == value) {
+			appendLong(longValue);
+			return length;
+		}
+
+		if (value < 0) {
+			buffer[length++] = '-';
+		}
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & (C_MIN - 1);
+		int bq = (int) (bits >>> 52) & 0x7FF;
+		if (bq != 0) {   // - Normal numbers.
+			int mq = -Q_MIN + 1 - bq;   // - The double is (C_MIN | t) * 2^-mq.
+			shortest(-mq, C_MIN | t, 0);
+		}
+		else {   // - Subnormal numbers.
+			if (t < 3) {
+				shortest(Q_MIN, 10 * t, -1);
+			}
+			else {
+				shortest(Q_MIN, t, 0);
+			}
+		}
+		return length;
+	}
+
+
+	// shortest method
+	private void shortest(int q, long c, int dk) {   // - Finds the shortest decimal in the rounding interval of c * 2^q.
+		int out = (int) c & 0x1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != C_MIN || q == Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		}
+		else {   // - The interval is lopsided at powers of two.
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		long g1 = G1[k - K_MIN];
+		long g0 = G0[k - K_MIN];
+		long vb = roundToOdd(g1, g0, cb << h);
+		long vbl = roundToOdd(g1, g0, cbl << h);
+		long vbr = roundToOdd(g1, g0, cbr << h);
+		long s = vb >> 2;
+
+		if (s >= 100) {   // - Try one digit less first.
+			long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				appendDecimal(upin ? sp10 : tp10, k);
+				return;
+			}
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) {
+			appendDecimal(uin ? s : t, k + dk);
+			return;
+		}
+		long cmp = vb - (s + t << 1);   // - Both are in the interval, so use the closer one.
+		appendDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+	}
+
+
+	// round to odd method
+	private static long roundToOdd(long g1, long g0, long cp) {
+		long x1 = Math.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = Math.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+
+	// append decimal method
+	private void appendDecimal(long f, int e) {   // - Writes f * 10^e with the same layout as Double.toString.
+		while (f % 10 == 0) {   // - Drop trailing zeros so f only has the digits that matter.
+			f /= 10;
+			e++;
+		}
+		int digits = digitCount(f);
+		int exponent = e + digits - 1;   // - Exponent of the first digit.
+
+		if (exponent >= -3 && exponent < 7) {   // - Plain notation, like "123.45" or "0.00123".
+			if (e >= 0) {
+				appendLong(f);
+				for (int i = 0; i < e; i++) {
+					buffer[length++] = '0';
+				}
+				buffer[length++] = '.';
+				buffer[length++] = '0';
+			}
+			else if (exponent >= 0) {
+				int start = length;
+				appendLong(f);
+				int point = start + exponent + 1;   // - Move the fraction one place right to make room for the decimal point.
+				System.arraycopy(buffer, point, buffer, point + 1, length - point);
+				buffer[point] = '.';
+				length++;
+			}
+			else {
+				buffer[length++] = '0';
+				buffer[length++] = '.';
+				for (int i = -1; i > exponent; i--) {
+					buffer[length++] = '0';
+				}
+				appendLong(f);
+			}
+		}
+		else {   // - Scientific notation, like "1.2345E-5" or "1.0E20".
+			int start = length;
+			appendLong(f);
+			System.arraycopy(buffer, start + 1, buffer, start + 2, length - start - 1);
+			buffer[start + 1] = '.';
+			length++;
+			if (digits == 1) {
+				buffer[length++] = '0';
+			}
+			buffer[length++] = 'E';
+			if (exponent < 0) {
+				buffer[length++] = '-';
+				exponent = -exponent;
+			}
+			appendLong(exponent);
+		}
+	}
+
+
+	// append long method
+	private void appendLong(long value) {
+		if (value < 0) {
+			buffer[length++] = '-';
+			if (value == Long.MIN_VALUE) {   // - Can't be negated, so write the last digit first.
+				appendLong(-(value / 10));
+				buffer[length++] = '8';
+				return;
+			}
+			value = -value;
+		}
+		int end = length + digitCount(value);
+		for (int i = end - 1; i >= length; i--) {   // - Digits are written from right to left.
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		length = end;
+	}
+
+
+	// append method
+	private int append(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer[length++] = text.charAt(i);
+		}
+		return length;
+	}
+
+
+	// digit count method
+	private static int digitCount(long value) {
+		int digits = 1;
+		for (long limit = 10; digits < 19 && value >= limit; limit *= 10) {
+			digits++;
+		}
+		return digits;
+	}
+
+
+	// exponent helpers, from Schubfach
+	private static int flog10pow2(int e) {   // - floor(log10(2^e))
+		return (int) (e * 661_971_961_083L >> 41);
+	}
+
+	private static int flog10threeQuartersPow2(int e) {   // - floor(log10(3/4 * 2^e))
+		return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+	}
+
+	private static int flog2pow10(int e) {   // - floor(log2(10^e))
+		return (int) (e * 913_124_641_741L >> 38);
+	}
+
+
+	// getters
+	public char[] getBuffer() {
+		return buffer;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public String toString() {   // - The last formatted answer.
+		return new String(buffer, 0, length);
+	}
+
+}
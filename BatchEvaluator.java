@@ -0,0 +1,402 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ *
+ * Evaluates a file of equations without opening the calculator window.
+ *
+ * Each line of the input file is one equation, typed the same way as on the keyboard, like "12+3*4" or "2^" or "81r".
+ * The calculator's own signs for divide, multiply, subtract, square and square root can be used as well. Spaces are ignored.
+ * The characters typed for operators that plug-ins add, like "%" for the example mod, press them too.
+ * Every line is pressed into a CalculatorEngine followed by equals, so the answers are exactly what the calculator
+ * would show, including how it chains operators left to right. Lines with anything else on them give "Error".
+ *
+ * The input file is memory-mapped in chunks, and the keys are read straight from the mapped bytes, so reading a
+ * line doesn't create a String. The answers are collected in a direct buffer and written to the output file
+ * through its FileChannel, one answer per line.
+ *
+ * With more than one thread, the input is split into chunks that end at the end of a line, and the chunks are
+ * evaluated at the same time by a ForkJoinPool, each with its own engine. The answers of each chunk are written
+ * in the same order as the input, as soon as the chunks before them are done. Only a few chunks per thread are
+ * in progress at a time, so memory doesn't grow with the size of the input.
+ *
+ * With --expressions, each line is instead an expression with the usual order of operations, like "2 + 3 * 4 = 14",
+ * compiled by ExpressionCompiler, which only knows the built-in operators. Compiled expressions are kept in an ExpressionCache, so lines that repeat
+ * the same formula are only parsed once. The number of cache hits and misses is printed at the end.
+ *
+ * Usage: java Calculator --batch [--threads n] [--expressions] input.txt output.txt
+ * The number of threads is the number of processors by default. One thread evaluates the whole file in order.
+ *
+ */
+
+public class BatchEvaluator {
+
+	// fields
+	static final long CHUNK_SIZE = 64L << 20;   // - How much of the input is mapped at a time. Chunks always end at the end of a line.
+	static final long MIN_PARALLEL_CHUNK_SIZE = 1L << 20;   // - Smaller chunks than this cost more to hand out than to evaluate.
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+	private static final byte[] ERROR = AnswerFormatter.ERROR.getBytes();
+	private static final int CACHE_SIZE = 4096;   // - Number of compiled expressions each evaluator remembers.
+
+	private final CalculatorEngine engine;   // - Reused for every line. It's reset at the start of each line.
+	private final ExpressionCache cache;   // - Null if lines are typed keys instead of expressions.
+	private final AnswerFormatter formatter = new AnswerFormatter();
+	private final double[] stack = new double[64];   // - Reused to evaluate expressions. Grown for expressions that need more.
+	private byte[] line = new byte[256];   // - Reused to copy an expression out of the mapped input.
+	private char[] answer = new char[64];   // - Reused to copy the engine's display out, so an answer doesn't make a String.
+
+
+	// constructors
+	public BatchEvaluator() {
+		this(null);
+	}
+
+	public BatchEvaluator(ExpressionCache cache) {   // - With a cache, lines are evaluated as expressions.
+		engine = new CalculatorEngine();
+		this.cache = cache;
+	}
+
+
+	// set metrics method
+	public void setMetrics(CalculatorMetrics metrics) {   // - Counts the keys and calculations of typed lines. Expressions don't use the engine, so they aren't counted.
+		engine.setMetrics(metrics);
+	}
+
+
+	// main method
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean expressions = false;
+		int first = 0;
+		while (first < args.length && args[first].startsWith("--")) {   // - Options come before the files.
+			if (args[first].equals("--threads") && first + 1 < args.length) {
+				threads = Integer.parseInt(args[first + 1]);
+				first += 2;
+			}
+			else if (args[first].equals("--expressions")) {
+				expressions = true;
+				first++;
+			}
+			else {
+				break;
+			}
+		}
+		if (args.length - first != 2 || threads < 1) {
+			System.err.println("Usage: java Calculator --batch [--threads n] [--expressions] input.txt output.txt");
+			return;
+		}
+		Path input = Paths.get(args[first]);
+		Path output = Paths.get(args[first + 1]);
+
+		ConcurrentLinkedQueue<ExpressionCache> caches = new ConcurrentLinkedQueue<ExpressionCache>();   // - Every cache that was used, to count hits and misses at the end.
+		long start = System.nanoTime();
+		long lines;
+		if (threads == 1) {
+			lines = newEvaluator(expressions, caches).evaluate(input, output);
+		}
+		else {
+			boolean useExpressions = expressions;
+			lines = evaluateParallel(input, output, threads, () -> newEvaluator(useExpressions, caches));
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Evaluated %d lines in %.3f s (%.0f lines/sec) with %d thread(s)%n", lines, seconds, lines / seconds, threads);
+		if (expressions) {
+			long hits = 0;
+			long misses = 0;
+			for (ExpressionCache cache : caches) {
+				hits += cache.getHits();
+				misses += cache.getMisses();
+			}
+			System.out.printf("Expression cache: %d hits, %d misses%n", hits, misses);
+		}
+	}
+
+
+	// new evaluator method
+	private static BatchEvaluator newEvaluator(boolean expressions, ConcurrentLinkedQueue<ExpressionCache> caches) {
+		if (!expressions) {
+			return new BatchEvaluator();
+		}
+		ExpressionCache cache = new ExpressionCache(CACHE_SIZE);   // - Each thread has its own cache so they never wait for each other.
+		caches.add(cache);
+		return new BatchEvaluator(cache);
+	}
+
+
+	// evaluate method
+	public long evaluate(Path input, Path output) throws IOException {   // - Returns the number of lines evaluated.
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			BatchOutput results = new BatchOutput(out, OUTPUT_BUFFER_SIZE);
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				long end = chunkEnd(in, position, size, CHUNK_SIZE);
+				MappedByteBuffer chunk = in.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+				evaluateChunk(chunk, results);
+				position = end;
+			}
+			results.flush();
+			return results.getLines();
+		}
+	}
+
+
+	// evaluate parallel method
+	public static long evaluateParallel(Path input, Path output, int parallelism, Supplier<BatchEvaluator> evaluatorFactory) throws IOException {   // - Returns the number of lines evaluated.
+		ThreadLocal<BatchEvaluator> evaluators = ThreadLocal.withInitial(evaluatorFactory);   // - One evaluator for each thread of the pool, because engines can't be shared.
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, Math.min(CHUNK_SIZE, size / (parallelism * 4L) + 1));   // - At least four chunks per thread so they finish at about the same time.
+			ArrayDeque<ForkJoinTask<BatchOutput>> inProgress = new ArrayDeque<ForkJoinTask<BatchOutput>>();   // - Chunks in the order of the input.
+			long lines = 0;
+			long position = 0;
+
+			while (position < size || !inProgress.isEmpty()) {
+				while (position < size && inProgress.size() < parallelism * 2) {   // - Keep every thread busy, but don't get too far ahead of the writing.
+					long end = chunkEnd(in, position, size, chunkSize);
+					MappedByteBuffer chunk = in.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+					int capacity = (int) Math.min(OUTPUT_BUFFER_SIZE, end - position);
+					inProgress.add(pool.submit(() -> {
+						BatchOutput results = new BatchOutput(null, capacity);
+						evaluators.get().evaluateChunk(chunk, results);
+						return results;
+					}));
+					position = end;
+				}
+
+				BatchOutput results = inProgress.poll().join();   // - The oldest chunk is always written next, so the output stays in order.
+				ByteBuffer buffer = results.getBuffer();
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+				lines += results.getLines();
+			}
+			return lines;
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+
+	// chunk end method
+	static long chunkEnd(FileChannel in, long start, long size, long chunkSize) throws IOException {   // - Finds where a chunk that starts at start should end, just after a new line.
+		long target = start + chunkSize;
+		if (target >= size) {
+			return size;
+		}
+		ByteBuffer scan = ByteBuffer.allocate(4096);
+		long position = target;
+		while (position < size) {   // - Keep reading until the line that crosses the target ends.
+			scan.clear();
+			int read = in.read(scan, position);
+			for (int i = 0; i < read; i++) {
+				if (scan.get(i) == '\n') {
+					long end = position + i + 1;
+					if (end - start > Integer.MAX_VALUE) {
+						throw new IOException("Line starting near byte " + target + " is too long.");
+					}
+					return end;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+
+	// evaluate chunk method
+	void evaluateChunk(ByteBuffer chunk, BatchOutput results) {   // - Evaluates every line in the chunk.
+		int limit = chunk.limit();
+		int lineStart = 0;
+		for (int i = 0; i < limit; i++) {
+			if (chunk.get(i) == '\n') {
+				evaluateLine(chunk, lineStart, i, results);
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart < limit) {   // - The last line of the file doesn't need a new line.
+			evaluateLine(chunk, lineStart, limit, results);
+		}
+	}
+
+
+	// evaluate line method
+	private void evaluateLine(ByteBuffer chunk, int start, int end, BatchOutput results) {
+		if (cache != null) {
+			evaluateExpression(chunk, start, end, results);
+			return;
+		}
+		engine.reset();
+		int i = start;
+		while (i < end) {
+			int b = chunk.get(i++) & 0xFF;
+			int c;
+			if (b < 0x80) {   // - Decode UTF-8 so the calculator's own signs can be used.
+				c = b;
+			}
+			else if ((b & 0xE0) == 0xC0 && i < end) {
+				c = (b & 0x1F) << 6 | (chunk.get(i++) & 0x3F);
+			}
+			else if ((b & 0xF0) == 0xE0 && i + 1 < end) {
+				c = (b & 0x0F) << 12 | (chunk.get(i++) & 0x3F) << 6 | (chunk.get(i++) & 0x3F);
+			}
+			else {
+				results.write(ERROR);
+				return;
+			}
+
+			if (c == ' ' || c == '\t' || c == '\r') {
+				continue;
+			}
+			if (c == 'x' && i + 1 < end && (chunk.get(i) & 0xFF) == 0xC2 && (chunk.get(i + 1) & 0xFF) == 0xB2) {   // - The x of x squared, which is followed by the UTF-8 bytes of the square sign.
+				continue;
+			}
+			CalculatorEngine.Key key = CalculatorEngine.Key.forChar((char) c);
+			if (key != null) {
+				engine.press(key);
+				continue;
+			}
+			CalculatorOperator operator = OperatorRegistry.forChar((char) c);
+			if (operator == null) {
+				results.write(ERROR);
+				return;
+			}
+			engine.press(operator);
+		}
+		engine.press(CalculatorEngine.Key.EQUALS);
+		DisplayText display = engine.getMainDisplay();
+		if (display.length() > answer.length) {
+			answer = new char[Math.max(display.length(), answer.length * 2)];
+		}
+		display.getChars(0, display.length(), answer, 0);
+		results.write(answer, display.length());
+	}
+
+
+	// evaluate expression method
+	private void evaluateExpression(ByteBuffer chunk, int start, int end, BatchOutput results) {
+		if (end > start && chunk.get(end - 1) == '\r') {
+			end--;
+		}
+		int length = end - start;
+		if (length > line.length) {
+			line = new byte[Math.max(length, line.length * 2)];
+		}
+		chunk.get(start, line, 0, length);   // - The text is the cache's key, so it has to become a String.
+
+		Expression expression;
+		try {
+			expression = cache.get(new String(line, 0, length, StandardCharsets.UTF_8));
+		}
+		catch (IllegalArgumentException e) {
+			results.write(ERROR);
+			return;
+		}
+		if (expression.getVariableCount() > 0) {   // - Nothing gives variables a value in batch mode, so a name is an error, like any other letters.
+			results.write(ERROR);
+			return;
+		}
+		double[] values = expression.getMaxStack() <= stack.length ? stack : new double[expression.getMaxStack()];
+		int answerLength = formatter.format(expression.evaluate(values));
+		results.write(formatter.getBuffer(), answerLength);
+	}
+
+
+	// batch output
+	static class BatchOutput {   // - Collects answers, one per line. Writes them to a channel when the buffer is full, or grows if there's no channel.
+
+		private final FileChannel channel;
+		private ByteBuffer buffer;
+		private long lines;   // - Number of answers written.
+
+		BatchOutput(FileChannel channel, int capacity) {
+			this.channel = channel;
+			this.buffer = channel != null ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		}
+
+		void write(byte[] answer) {
+			ensureRoom(answer.length + 1);
+			buffer.put(answer);
+			buffer.put((byte) '\n');
+			lines++;
+		}
+
+		void write(char[] answer, int length) {
+			ensureRoom(length * 3 + 1);   // - Every char is at most three bytes in UTF-8.
+			for (int i = 0; i < length; i++) {
+				put(answer[i]);
+			}
+			buffer.put((byte) '\n');
+			lines++;
+		}
+
+		private void put(char c) {   // - Encodes one char as UTF-8.
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			}
+			else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | c >> 6));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			}
+			else {
+				buffer.put((byte) (0xE0 | c >> 12));
+				buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+
+		private void ensureRoom(int bytes) {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			if (channel != null) {
+				flush();
+			}
+			if (buffer.remaining() < bytes) {   // - Grow, for answers bigger than the whole buffer or when there's no channel.
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+		}
+
+		void flush() {
+			buffer.flip();
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			buffer.clear();
+		}
+
+		ByteBuffer getBuffer() {
+			return buffer;
+		}
+
+		long getLines() {
+			return lines;
+		}
+	}
+
+}
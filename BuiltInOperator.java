@@ -0,0 +1,151 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ *
+ * The operators that have keys: divide, multiply, add, subtract, square and square root.
+ *
+ * They're registered first, in this order, so their index in OperatorRegistry is their ordinal. The binary ones are in
+ * the order the engine always calculated them in, which matters when a second operator is pressed right after the first,
+ * like "1 +" and then multiply.
+ * Their texts are their keys' texts, and their decimal and exact answers are DecimalMath's and Rational's.
+ *
+ */
+
+public enum BuiltInOperator implements CalculatorOperator {
+
+	DIVIDE(CalculatorEngine.Key.DIVIDE, "divide") {
+		public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+			return DecimalMath.divide(first, second, mathContext);
+		}
+
+		public boolean exact(Rational answer, Rational first, Rational second) {
+			return answer.divide(first, second);
+		}
+	},
+	MULTIPLY(CalculatorEngine.Key.MULTIPLY, "multiply") {
+		public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+			return DecimalMath.multiply(first, second, mathContext);
+		}
+
+		public boolean exact(Rational answer, Rational first, Rational second) {
+			return answer.multiply(first, second);
+		}
+	},
+	ADD(CalculatorEngine.Key.ADD, "add") {
+		public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+			return DecimalMath.add(first, second, mathContext);
+		}
+
+		public boolean exact(Rational answer, Rational first, Rational second) {
+			return answer.add(first, second);
+		}
+	},
+	SUBTRACT(CalculatorEngine.Key.SUBTRACT, "subtract") {
+		public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+			return DecimalMath.subtract(first, second, mathContext);
+		}
+
+		public boolean exact(Rational answer, Rational first, Rational second) {
+			return answer.subtract(first, second);
+		}
+	},
+	SQUARE(CalculatorEngine.Key.SQUARE, "square") {
+		public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+			return DecimalMath.square(first, mathContext);
+		}
+
+		public boolean exact(Rational answer, Rational first, Rational second) {
+			return answer.multiply(first, first);
+		}
+
+		public DisplayText equation(DisplayText number) {
+			return number.append('\u00B2');
+		}
+	},
+	SQRT(CalculatorEngine.Key.SQRT, "sqrt") {
+		public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+			return DecimalMath.sqrt(first, mathContext);
+		}
+
+		public boolean exact(Rational answer, Rational first, Rational second) {   // - Only exact for squares, like 9 or 1/4.
+			return answer.sqrt(first);
+		}
+
+		public DisplayText equation(DisplayText number) {
+			return SQUARE_ROOT.append(number);
+		}
+	};
+
+	private static final DisplayText SQUARE_ROOT = DisplayText.of("\u221A");
+
+	private final CalculatorEngine.Key key;
+	private final boolean unary;
+	private final MethodHandle handle;
+
+
+	// constructor
+	BuiltInOperator(CalculatorEngine.Key key, String method) {
+		this.key = key;
+		unary = key == CalculatorEngine.Key.SQUARE || key == CalculatorEngine.Key.SQRT;
+		MethodType type = unary ? MethodType.methodType(double.class, double.class) : MethodType.methodType(double.class, double.class, double.class);
+		try {
+			handle = MethodHandles.lookup().findStatic(BuiltInOperator.class, method, type);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	// operations
+	private static double divide(double first, double second) {
+		return first / second;
+	}
+
+	private static double multiply(double first, double second) {
+		return first * second;
+	}
+
+	private static double add(double first, double second) {
+		return first + second;
+	}
+
+	private static double subtract(double first, double second) {
+		return first - second;
+	}
+
+	private static double square(double number) {
+		return Math.pow(number, 2);
+	}
+
+	private static double sqrt(double number) {
+		return Math.sqrt(number);
+	}
+
+
+	// getters
+	public CalculatorEngine.Key getKey() {
+		return key;
+	}
+
+	public String getName() {
+		return name();
+	}
+
+	public String getText() {
+		return key.getText();
+	}
+
+	public boolean isUnary() {
+		return unary;
+	}
+
+	public MethodHandle getHandle() {
+		return handle;
+	}
+
+}
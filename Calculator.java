@@ -1,6 +1,7 @@
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Graphics;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
@@ -8,19 +9,34 @@ import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.ArrayList;
-
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import javax.management.JMException;
+
+import javax.swing.AbstractAction;
+import javax.swing.ActionMap;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.InputMap;
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.SwingConstants;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.border.Border;
 
 /**
  * 
@@ -44,6 +60,9 @@ import javax.swing.SwingConstants;
  * When a new equation is started, the label will show the answer that was just calculated.
  * Clicking on the answer will copy it to the user's clipboard.
  *
+ * The state and the logic live in CalculatorEngine. This class only builds the window, passes each button
+ * to the engine, and displays the engine's texts.
+ *
  */
 
 public class Calculator {
@@ -51,38 +70,39 @@ public class Calculator {
 	// fields
 	private JFrame frame;
 	private JPanel fullPanel, displayPanel, buttonPanel;
-	private JButton square, sqrt, delete, clear, zero, decimal, one, two, three, four, five, six, seven, eight, nine, divide, multiply, add, subtract, equals;
-	private JLabel previousLabel, mainLabel;
-
-	ArrayList<JButton> buttons;
-	ArrayList<JButton> printableButtons;
-	ArrayList<JButton> operatorButtons;
-
-	Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();   // - All the JFrame components are scaled to the screensize.
-	private int frameWidth = (int) screenSize.getWidth()/4;
-	private int frameHeight = (int) screenSize.getHeight()*9/16;
-	private int borderThickness = frameWidth/20;
-
-	private boolean dividing;   // - True if their respective operators have been entered.
-	private boolean multiplying;   // - "If multiplying, then multiply the first number by the second number".
-	private boolean adding;
-	private boolean subtracting;
-
-	private String firstNumber;   // - First group of numbers that are entered in the equation.
-	private double doubleFirstNumber;   // - firstNumber is parsed to a double to be used in calculations.
-	private boolean addingToFirstNumber;   // - Stops or starts adding to firstNumber.
-	private String secondNumber;
-	private double doubleSecondNumber;
-	private boolean addingToSecondNumber;
-
-	private String answer;   // - A string to store the answer so it can be displayed.
-	private double doubleAnswer;   // - The calculated answer that is parsed into a string so it can be displayed.
-	private String answerText;   // - Text in the previousLabel to show the answer to the previous equation.
-	private String equationText; // - Text in the previousLabel to show the equation that returned the current answer being displayed.
-
-	private boolean calculated;   // - True if the equals button was just entered. Lets the user start a new equation right away.
-	private boolean decimalEntered;   // - True if a decimal been entered, prevents multiple decimals in one number.
-	private boolean operatorEntered;   // - True if an operator has just been entered.
+	private DisplayView previousLabel, mainLabel;   // - They only paint the end of the text that fits, so very long numbers and equations don't slow them down.
+
+	JButton[] buttons;   // - Buttons indexed by the ordinal of their key.
+	ButtonActionListener[] buttonActions;   // - The action for each key, indexed the same way. Buttons and the keyboard both use these.
+	ButtonActionListener[] operatorActions;   // - The action for each operator a plug-in added, indexed by its index in OperatorRegistry. Null for built-in ones, which have keys.
+
+	private static final Color buttonColor = new Color(240, 240, 240);   // - Colors and borders are made once instead of on every mouse event.
+	private static final Color hoverColor = new Color(220, 220, 220);
+	private static final Border buttonBorder = BorderFactory.createLineBorder(buttonColor, 2, true);
+	private static final Border hoverBorder = BorderFactory.createLineBorder(hoverColor, 2, true);
+	private static final long STALL_THRESHOLD_MILLIS = 100;   // - With --latency, events that take longer than this are stalls.
+	private static final int TRACE_CAPACITY = 8192;   // - Trace events that can wait to be written before new ones are dropped.
+
+	Dimension screenSize;   // - All the JFrame components are scaled to the screensize. Asked for on the event dispatch thread, not while the Calculator is constructed.
+	private int frameWidth;
+	private int frameHeight;
+	private int borderThickness;
+
+	private CalculatorEngine engine;   // - Holds the numbers, operators and texts. The GUI only displays what the engine says.
+	private boolean eagerEvaluation;   // - Set by --eager to calculate the answer on every digit instead of only when it's needed.
+	private MathContext mathContext;   // - Set by --decimal to calculate with BigDecimals instead of doubles. Null for doubles.
+	private boolean exact;   // - Set by --exact to calculate with exact fractions.
+	private Path historyPath = Paths.get(System.getProperty("user.home"), ".calculator-history");   // - Set by --history=file.
+	private HistoryLog history;   // - Every finished equation, kept between runs. Null if the file couldn't be opened.
+	private HistoryWindow historyWindow;   // - Opened with Ctrl+H. Null until then.
+
+	private boolean fastStart;   // - Set by --fast-start to show the window first and make the buttons right after.
+	private StartupTimer startupTimer;   // - Set by --startup-timing or --exit-after-startup. Null if startup isn't timed.
+	private LatencyMonitor latencyMonitor;   // - Set by --latency to measure press to paint times and event dispatch thread stalls. Null if they aren't measured.
+	private LatencyOverlay latencyOverlay;
+	private CalculatorMetrics metrics;   // - Counts keys, calculations and copies, and shows them over JMX as Calculator:type=Metrics.
+	private TraceBuffer tracer;   // - Calculations are traced to the console, or to a file with --trace-file=file. Null with --trace=off.
+	private SessionRecorder recorder;   // - Set by --record=file to record every key for replaying later. Null if the session isn't recorded.
 
 	private StringSelection copiedAnswer;   // - StringSelection to store the answer so it can be copied to user's clipboard
 	private Clipboard clipboard;   // - User's clipboard to copy the answer to;
@@ -90,31 +110,77 @@ public class Calculator {
 
 	// create and show GUI
 	private void createAndShowGUI() {
+		screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+		frameWidth = (int) screenSize.getWidth()/4;
+		frameHeight = (int) screenSize.getHeight()*9/16;
+		borderThickness = frameWidth/20;
+
 		frame = new JFrame("Calculator");   // - Create a JFrame object
+		createPanels();   // - Create the GUI.
+		createLabels();
+
+		if (fastStart) {   // - Show the display and an empty button panel first. The buttons are made in the next event, after the window is on the screen.
+			showFrame();
+			SwingUtilities.invokeLater(this::createControls);
+		}
+		else {
+			createControls();
+			showFrame();
+		}
+	}
+
 
-		operatorEntered = false;   // - Initialize the variables.
-		dividing = false;
-		multiplying = false;
-		adding = false;
-		subtracting = false;
-		firstNumber = "";
-		doubleFirstNumber = 0;
-		addingToFirstNumber = true;
-		secondNumber = "";
-		doubleSecondNumber = 0;
-		addingToSecondNumber = false;
-		answer = "";
-		doubleAnswer = 0;
-		equationText = "";
-		answerText = "";
-		calculated = false;
-		decimalEntered = false;
+	// create controls
+	private void createControls() {   // - Everything the window needs to be used, and not just seen.
+		engine = new CalculatorEngine();   // - Initialize the engine.
+		engine.setTracer(tracer);
+		metrics = new CalculatorMetrics();
+		engine.setMetrics(metrics);
+		Thread registration = new Thread(this::registerMetrics, "metrics-registration");   // - JMX takes a while to load, so it's loaded on its own thread instead of the event dispatch thread.
+		registration.setDaemon(true);
+		registration.start();
+		engine.setEagerEvaluation(eagerEvaluation);
+		engine.setMathContext(mathContext);
+		engine.setExact(exact);
+		engine.setUndoEnabled(true);
+		try {
+			history = new HistoryLog(historyPath);
+			engine.setHistory(history);
+		}
+		catch (IOException e) {   // - The calculator still works without history.
+			System.out.println("No history: " + e.getMessage());
+		}
 		copiedAnswer = new StringSelection("");
 
-		createPanels();   // - Create the GUI.
-		createLabels();
 		createButtons();
+		createKeyBindings();
+		if (latencyMonitor != null) {
+			createLatencyOverlay();
+		}
 
+		if (fastStart) {   // - The frame is already showing, so lay out and paint the new buttons.
+			buttonPanel.revalidate();
+			buttonPanel.repaint();
+		}
+		if (startupTimer != null) {
+			SwingUtilities.invokeLater(startupTimer::markInteractive);   // - After the events that are already waiting, like painting the buttons.
+		}
+	}
+
+
+	// register metrics method
+	private void registerMetrics() {
+		try {
+			metrics.register();
+		}
+		catch (JMException e) {   // - The calculator still works, it just can't be watched.
+			System.out.println("Metrics aren't in JMX: " + e.getMessage());
+		}
+	}
+
+
+	// show frame
+	private void showFrame() {
 		frame.setBackground(Color.red);   // - Set up the frame.
 		frame.setSize(frameWidth, frameHeight);
 		frame.setLocationRelativeTo(null);
@@ -127,7 +193,14 @@ public class Calculator {
 
 	// create and add panels
 	private void createPanels() {
-		fullPanel = new JPanel();   // - Create the fullPanel. It takes up the whole JFrame and holds displayPanel and buttonPanel.
+		fullPanel = new JPanel() {   // - Create the fullPanel. It takes up the whole JFrame and holds displayPanel and buttonPanel.
+			protected void paintComponent(Graphics g) {
+				super.paintComponent(g);
+				if (startupTimer != null) {
+					startupTimer.markFirstPaint();
+				}
+			}
+		};
 		fullPanel.setBackground(Color.white);
 		fullPanel.setLayout(new BoxLayout(fullPanel, BoxLayout.Y_AXIS));
 		fullPanel.setBorder(BorderFactory.createEmptyBorder(borderThickness, borderThickness, borderThickness, borderThickness));
@@ -152,7 +225,7 @@ public class Calculator {
 	private void createLabels() {
 		displayPanel.setLayout(new GridBagLayout());   // - displayPanel has a GridBagLayout.
 
-		previousLabel = new JLabel("", SwingConstants.RIGHT);   // - previousLabel is the small part at the top that displays the previous answer and equation.
+		previousLabel = new DisplayLabel("");   // - previousLabel is the small part at the top that displays the previous answer and equation.
 		previousLabel.setFont(new Font("Arial", Font.PLAIN, 14));
 		previousLabel.setForeground(new Color(120, 120, 120));
 		previousLabel.setBorder(BorderFactory.createEmptyBorder(0, borderThickness, 0, borderThickness));
@@ -163,7 +236,7 @@ public class Calculator {
 		previousLabelConstraints.weightx = 1.0;   // - Fill the empty horizontal space.
 		previousLabelConstraints.ipady = frameHeight/24;   // - Add vertical space.
 
-		mainLabel = new JLabel("0", SwingConstants.RIGHT);   // - mainLabel is the main part that displays the current equation and answer.
+		mainLabel = new DisplayLabel("0");   // - mainLabel is the main part that displays the current equation and answer.
 		mainLabel.setFont(new Font("Arial", Font.PLAIN, 26));
 		mainLabel.setBorder(BorderFactory.createEmptyBorder(0, borderThickness, 0, borderThickness));
 		GridBagConstraints mainLabelConstraints = new GridBagConstraints();
@@ -173,7 +246,6 @@ public class Calculator {
 		mainLabelConstraints.weightx = 1.0;
 		mainLabelConstraints.weighty = 1.0;   // - Fill the empty vertical space.
 		mainLabelConstraints.ipady = frameHeight/12;   // - Add more vertical space than previousLabel.
-		mainLabel.addMouseListener(new ButtonMouseListener());
 
 		displayPanel.add(previousLabel, previousLabelConstraints);   // - Add labels to displayPanel under their respective constraints.
 		displayPanel.add(mainLabel, mainLabelConstraints);
@@ -182,310 +254,224 @@ public class Calculator {
 
 
 	// create buttons
-	@SuppressWarnings("unchecked")
 	private void createButtons() {
-		buttonPanel.setLayout(new GridLayout(5,4, borderThickness/2, borderThickness/2));   // - buttonPanel has a 6 x 4 GridLayout. The cells have a border.
-
-		buttons = new ArrayList<JButton>();   // - Create all the buttons
-		square = new JButton("x\u00B2");
-		sqrt = new JButton("\u221A");
-		delete = new JButton("CE");
-		clear = new JButton("AC");
-		seven = new JButton("7");
-		eight = new JButton("8");
-		nine = new JButton("9");
-		divide = new JButton("");
-		four = new JButton("4");
-		five = new JButton("5");
-		six = new JButton("6");
-		multiply = new JButton("");
-		one = new JButton("1");
-		two = new JButton("2");
-		three = new JButton("3");
-		subtract = new JButton("-");
-		decimal = new JButton(".");
-		zero = new JButton("0");
-		equals = new JButton("=");
-		add = new JButton("+");
-
-		buttons.add(square);   // - Add all the buttons to ArrayList to use for-loops.
-		buttons.add(sqrt);
-		buttons.add(delete);
-		buttons.add(clear);
-		buttons.add(seven);
-		buttons.add(eight);
-		buttons.add(nine);
-		buttons.add(divide);
-		buttons.add(four);
-		buttons.add(five);
-		buttons.add(six);
-		buttons.add(multiply);
-		buttons.add(one);
-		buttons.add(two);
-		buttons.add(three);
-		buttons.add(subtract);
-		buttons.add(decimal);
-		buttons.add(zero);
-		buttons.add(equals);
-		buttons.add(add);
-
-		printableButtons = (ArrayList<JButton>) buttons.clone();   // - Printable means it can be displayed as part of the equation.
-		printableButtons.remove(square);
-		printableButtons.remove(sqrt);
-		printableButtons.remove(delete);
-		printableButtons.remove(clear);
-		printableButtons.remove(equals);
-
-		operatorButtons =  new ArrayList<JButton>();   // - Operators have their own ArrayList.
-		operatorButtons.add(divide);
-		operatorButtons.add(multiply);
-		operatorButtons.add(add);
-		operatorButtons.add(subtract);
-
-		for (JButton button : buttons) {   // - Set up all the buttons.
-			button.setBackground(new Color(240, 240, 240));
+		int plugins = OperatorRegistry.size() - BuiltInOperator.values().length;
+		buttonPanel.setLayout(new GridLayout(5 + (plugins + 3) / 4, 4, borderThickness/2, borderThickness/2));   // - buttonPanel has a 5 x 4 GridLayout, with a row for every four operators plug-ins added. The cells have a border.
+
+		CalculatorEngine.Key[] keys = CalculatorEngine.Key.values();   // - Create a button and an action for every key. Keys are in the same order as the grid.
+		buttons = new JButton[keys.length];
+		buttonActions = new ButtonActionListener[keys.length];
+		ButtonMouseListener mouseListener = new ButtonMouseListener();
+		mainLabel.addMouseListener(mouseListener);   // - Only mouseClicked does anything for the label. Added here, with --fast-start after the window is showing, because a click uses the engine and metrics.
+
+		for (CalculatorEngine.Key key : keys) {   // - Set up all the buttons.
+			JButton button = new JButton(key.getText());
+			button.setBackground(buttonColor);
+			button.setFont(new Font("Arial", Font.PLAIN, 17));
+			button.setBorder(buttonBorder);
+			buttonActions[key.ordinal()] = new ButtonActionListener(key);
+			button.addActionListener(buttonActions[key.ordinal()]);   // - Each button has its own action, so a click doesn't have to search for the button.
+			button.addMouseListener(mouseListener);
+			buttons[key.ordinal()] = button;
+			buttonPanel.add(button);
+		}
+
+		operatorActions = new ButtonActionListener[OperatorRegistry.size()];
+		for (int i = 0; i < OperatorRegistry.size(); i++) {   // - Plug-ins' operators go in the rows under the keys.
+			if (OperatorRegistry.isBuiltIn(i)) {
+				continue;
+			}
+			JButton button = new JButton(OperatorRegistry.get(i).getText());
+			button.setBackground(buttonColor);
 			button.setFont(new Font("Arial", Font.PLAIN, 17));
-			button.setBorder(BorderFactory.createLineBorder(new Color(240, 240, 240), 2, true));
-			button.addActionListener(new ButtonActionListener());
-			button.addMouseListener(new ButtonMouseListener());
+			button.setBorder(buttonBorder);
+			operatorActions[i] = new ButtonActionListener(OperatorRegistry.get(i));
+			button.addActionListener(operatorActions[i]);
+			button.addMouseListener(mouseListener);
 			buttonPanel.add(button);
 		}
 	}
 
 
-	// button action listener
-	private class ButtonActionListener implements ActionListener{
+	// create key bindings
+	private void createKeyBindings() {
+		InputMap inputMap = fullPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);   // - Typing works anywhere in the window.
+		ActionMap actionMap = fullPanel.getActionMap();
 
-		public void actionPerformed(ActionEvent e) {
-			for (JButton button : buttons) {
-				if (e.getSource().equals(button)) {   // - Identify what button has been clicked.
-					frame.setTitle("Calculator");
-
-					if (button.equals(square)) {   // - Square
-						if (!mainLabel.getText().equals("")) {
-							if (calculated || (addingToFirstNumber && firstNumber != "")) {
-								doubleAnswer = Math.pow(doubleFirstNumber, 2);
-
-								long longAnswer = (long) doubleAnswer;   // - Get rid of unnecessary decimals.
-								if (longAnswer == doubleAnswer) {
-									answer = longAnswer + "";
-								}
-								else {
-									answer = doubleAnswer + "";
-								}
-
-								firstNumber = answer;   // - Update texts and numbers
-								doubleFirstNumber = doubleAnswer;
-								answerText = "Ans = " + answer;
-								equationText = firstNumber + "\u00B2";
-								mainLabel.setText(answer);
-								calculated = true;
-							}
-						}
-					}
+		for (CalculatorEngine.Key key : CalculatorEngine.Key.values()) {
+			actionMap.put(key, buttonActions[key.ordinal()]);   // - Typed keys go through the same actions as the buttons.
+			for (char c : key.getTypedChars().toCharArray()) {
+				inputMap.put(KeyStroke.getKeyStroke(c), key);
+			}
+		}
+		for (int i = 0; i < operatorActions.length; i++) {
+			if (operatorActions[i] == null) {
+				continue;
+			}
+			CalculatorOperator operator = OperatorRegistry.get(i);
+			actionMap.put(operator, operatorActions[i]);
+			for (char c : operator.getTypedChars().toCharArray()) {
+				if (CalculatorEngine.Key.forChar(c) == null) {   // - A key's character always presses the key.
+					inputMap.put(KeyStroke.getKeyStroke(c), operator);
+				}
+			}
+		}
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), CalculatorEngine.Key.EQUALS);   // - Keys that don't type a character are bound when they are pressed.
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_BACK_SPACE, 0), CalculatorEngine.Key.DELETE);
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CalculatorEngine.Key.CLEAR);
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), CalculatorEngine.Key.CLEAR);
+
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");   // - Ctrl+Z undoes any key, and Ctrl+Y or Ctrl+Shift+Z redoes it.
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+		actionMap.put("undo", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) {
+				if (recorder != null) {
+					recorder.undo();
+				}
+				if (engine.undo()) {
+					showEngine();
+				}
+			}
+		});
+		actionMap.put("redo", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) {
+				if (recorder != null) {
+					recorder.redo();
+				}
+				if (engine.redo()) {
+					showEngine();
+				}
+			}
+		});
 
-					if (button.equals(sqrt)) {   // - Square root
-						if (!mainLabel.getText().equals("")) {
-							if (calculated || (addingToFirstNumber && firstNumber != "")) {
-								doubleAnswer = Math.sqrt(doubleFirstNumber);
-
-								long longAnswer = (long) doubleAnswer;   // - Get rid of unnecessary decimals.
-								if (longAnswer == doubleAnswer) {
-									answer = longAnswer + "";
-								}
-								else {
-									answer = doubleAnswer + "";
-								}
-
-								firstNumber = answer;   // - Update texts and numbers
-								doubleFirstNumber = doubleAnswer;
-								answerText = "Ans = " + answer;
-								equationText = "\u221A" + firstNumber;
-								mainLabel.setText(answer);
-								calculated = true;
-							}
-						}
-					}
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_H, InputEvent.CTRL_DOWN_MASK), "history");   // - Ctrl+H shows the history.
+		actionMap.put("history", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) {
+				showHistory();
+			}
+		});
+
+		if (tracer != null) {
+			inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_T, InputEvent.CTRL_DOWN_MASK), "traceLevel");   // - Ctrl+T changes what's traced, from off to calculations to keys.
+			actionMap.put("traceLevel", new AbstractAction() {
+				public void actionPerformed(ActionEvent e) {
+					TraceBuffer.Level[] levels = TraceBuffer.Level.values();
+					tracer.setLevel(levels[(tracer.getLevel().ordinal() + 1) % levels.length]);
+					frame.setTitle("Tracing " + tracer.getLevel().toString().toLowerCase());
+				}
+			});
+		}
+	}
 
-					if (button.equals(delete)) {   // - Delete
-						if (!mainLabel.getText().equals("")) {
-							if (addingToFirstNumber && firstNumber != "") {   // - Deleting from firstNumber.
-								if (firstNumber.substring(0, firstNumber.length() - 1).equals("")) {   // - If deleting last entry leaves nothing, then firstNumber becomes 0.
-									firstNumber = "0";
-								}
-								else {
-									firstNumber = firstNumber.substring(0, firstNumber.length() - 1);   // - Delete last entry from firstNumber.
-								}
-								doubleFirstNumber = Double.parseDouble(firstNumber);   // - Update these variables with the new firstNumber.
-								answer = firstNumber;
-								doubleAnswer = doubleFirstNumber;
-								equationText = firstNumber;
-								mainLabel.setText(firstNumber);   // - Display the new firstNumber
-							}
-
-							if (addingToSecondNumber && secondNumber == "") {   // - Deleting the operator.
-								answer = firstNumber;
-								doubleAnswer = doubleFirstNumber;
-								equationText = firstNumber;
-								mainLabel.setText(firstNumber);
-								addingToFirstNumber = true;   // - Start adding to firstNumber again.
-								addingToSecondNumber = false;
-								resetOperatorBooleans();   // - Reset operators.
-							}
-
-							if (addingToSecondNumber && secondNumber != "") {   // - Deleting from secondNumber.
-
-								if (secondNumber.substring(0, secondNumber.length() - 1).equals("")) {   // - Deleting last entry leaves nothing in secondNumber.
-									secondNumber = "";
-									answer = firstNumber;   // - answer is firstNumber until a new secondNumber is entered.
-									doubleAnswer = doubleFirstNumber;
-									equationText = equationText.substring(0, equationText.length() - 1);   // - Delete last entry from equationText and mainLabel.
-									mainLabel.setText(mainLabel.getText().substring(0, mainLabel.getText().length() - 1));
-								}
-								else {   // - Deleting lastEntry leaves a number in secondNumber.
-									secondNumber = secondNumber.substring(0, secondNumber.length() - 1);
-									doubleSecondNumber = Double.parseDouble(secondNumber);
-									equationText = equationText.substring(0, equationText.length() - 1);   // - Delete last entry from equationText and mainLabel.
-									mainLabel.setText(mainLabel.getText().substring(0, mainLabel.getText().length() - 1));
-									calculation();
-								}
-							}
-						}
-					}
 
-					if (button.equals(clear)) {   // - Clear
-
-						mainLabel.setText("0");   // - Clear the mainLabel.
-						previousLabel.setText(answerText);   // - previousLabel displays the previous answer
-						resetOperatorBooleans();   // - Reset operators.						
-						firstNumber = "";   // - Reset numbers
-						doubleFirstNumber = 0;
-						addingToFirstNumber = true;
-						secondNumber = "";
-						doubleSecondNumber = 0;
-						addingToSecondNumber = false;
-						answer = "0";   // - Set answer to 0 just to display something if equals is entered.
-						doubleAnswer = 0;
-						equationText = "";
-						decimalEntered = false;
-						operatorEntered = false;
-					}
+	// create latency overlay
+	private void createLatencyOverlay() {   // - The overlay is the frame's glass pane. Ctrl+L shows or hides it, and Ctrl+D writes the latencies to a file.
+		latencyMonitor.install();
+		latencyOverlay = new LatencyOverlay(latencyMonitor);
+		frame.setGlassPane(latencyOverlay);
+		latencyOverlay.setVisible(true);
 
-					if (button.equals(equals)) {   // - Equals
-						mainLabel.setText(answer);   // - mainLabel displays the answer.
-						previousLabel.setText(equationText + " = ");   // - previousLabel displays the previous equation.
-						resetOperatorBooleans();   // - Reset operators.
-						firstNumber = answer;   // - Store the answer as the first number so it can be used in the next equation.
-						doubleFirstNumber = Double.parseDouble(firstNumber);
-						addingToFirstNumber = true;   // - If a number is selected right after the answer is calculated, the answer is replaced by a new first number.
-						secondNumber = "";
-						doubleSecondNumber = 0;
-						addingToSecondNumber = false;
-						calculated = true;
-						decimalEntered = false;
-						operatorEntered = false;
-					}
+		InputMap inputMap = fullPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+		ActionMap actionMap = fullPanel.getActionMap();
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_L, InputEvent.CTRL_DOWN_MASK), "latencyOverlay");
+		actionMap.put("latencyOverlay", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) {
+				latencyOverlay.setVisible(!latencyOverlay.isVisible());
+			}
+		});
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK), "latencyDump");
+		actionMap.put("latencyDump", new AbstractAction() {
+			public void actionPerformed(ActionEvent e) {
+				Path path = Paths.get("calculator-latency.txt");
+				try {
+					latencyMonitor.dump(path);
+					frame.setTitle("Latencies written to " + path.toAbsolutePath());
+				}
+				catch (IOException exception) {
+					frame.setTitle("Couldn't write " + path + ": " + exception.getMessage());
+				}
+			}
+		});
+	}
+
+
+	// show history method
+	private void showHistory() {
+		if (history == null) {
+			return;
+		}
+		if (historyWindow == null) {
+			historyWindow = new HistoryWindow(history);
+			historyWindow.setLocationRelativeTo(frame);
+		}
+		historyWindow.refresh();
+		historyWindow.setVisible(true);
+		historyWindow.scrollToEnd();
+	}
+
+
+	// show engine method
+	private void showEngine() {   // - The labels show the engine's texts.
+		mainLabel.setText(engine.getMainDisplay());
+		previousLabel.setText(engine.getPreviousDisplay());
+	}
+
+
+	// button action listener
+	@SuppressWarnings("serial")
+	private class ButtonActionListener extends AbstractAction {
+
+		private final CalculatorEngine.Key key;   // - The key this action presses, or null if it presses an operator.
+		private final CalculatorOperator operator;   // - The plug-in operator this action presses, or null if it presses a key.
+
+		private ButtonActionListener(CalculatorEngine.Key key) {
+			this.key = key;
+			operator = null;
+		}
 
-					if (printableButtons.contains(button)) {
-
-						if (operatorButtons.contains(button)) {   // - Operators
-							decimalEntered = false;   // - Reset decimalEntered because an operator means the number is complete.
-
-							if (button.equals(divide)) {   // - Tell the calculator which operation to do.
-								dividing = true;
-							}
-							if (button.equals(multiply)) {
-								multiplying = true;
-							}
-							if (button.equals(add)) {
-								adding = true;
-							}
-							if (button.equals(subtract)) {
-								subtracting = true;
-							}
-
-							if (addingToSecondNumber == true && !secondNumber.equals("")) {   // - This means the second number is complete so calculate the first equation and start the next one.
-								mainLabel.setText(answer);   // - Display the answer.
-								firstNumber = answer;   // - Start the next equation with the answer as the firstNumber.
-								doubleFirstNumber = Double.parseDouble(firstNumber);
-								secondNumber = "";
-								doubleSecondNumber = 0;
-								operatorEntered = true;
-							}
-
-							if (operatorEntered == false || !mainLabel.getText().equals("")) {   // -These conditions prevent starting an equation with an operator and entering two operators in a row.
-								mainLabel.setText(mainLabel.getText() + " " + button.getText() + " ");   // - Add operator normally.
-								operatorEntered = true;
-								addingToFirstNumber = false;   // - The firstNumber is complete so start adding to the secondNumber.
-								addingToSecondNumber = true;
-								equationText += " " + button.getText() + " ";
-							}
-						}
-
-						else {   // - Numbers
-							if (addingToFirstNumber) {
-
-								if (calculated) {   // - Start a new equation. The user isn't using the previous answer so reset firstNumber and equationText.
-									previousLabel.setText(answerText);   // - previousLabel displays previous answer.
-									firstNumber = "";
-									doubleFirstNumber = 0;
-									mainLabel.setText("");   // - Clear the mainLabel.
-									equationText = "";
-									answer = "";
-									calculated = false;
-								}
-
-								if (button.equals(decimal) && firstNumber.equals("") && !decimalEntered) {   // - If this is the start of a new equation, this displays "0." instead of "." 
-									firstNumber = "0.";
-									mainLabel.setText(firstNumber);
-									answer = "0.";
-									doubleAnswer = 0.;
-									equationText += "0.";
-									decimalEntered = true;
-								}
-
-								else if (!button.equals(decimal) || !decimalEntered){   // - These conditions prevent multiple decimals in a row.
-									if (button.equals(decimal)) {
-										decimalEntered = true;
-									}
-
-									if (mainLabel.getText().equals("0")) {   // - When a number is entered after every number has been deleted, the display will show "5" instead of "05"
-										mainLabel.setText("");
-										equationText = "";
-										firstNumber = "";
-									}
-									mainLabel.setText(mainLabel.getText() + button.getText());   // - Add number/decimal normally.
-									firstNumber += button.getText();
-									doubleFirstNumber = Double.parseDouble(firstNumber);
-									answer += button.getText();
-									doubleAnswer = Double.parseDouble(answer);
-									equationText += button.getText();
-								}
-							}
-
-							if (addingToSecondNumber) {
-								if (button.equals(decimal) && secondNumber.equals("") && !decimalEntered) {   // - If this is the start of a new secondNumber, this displays "0." instead of "."
-									secondNumber = "0.";
-									mainLabel.setText(mainLabel.getText() + secondNumber);
-									answer = "0.";
-									doubleAnswer = 0.;
-									equationText += "0.";
-									decimalEntered = true;
-								}
-								else if (!button.equals(decimal) || !decimalEntered){   // - These conditions prevent multiple decimals in a row.
-									if (button.equals(decimal)) {
-										decimalEntered = true;
-									}
-									mainLabel.setText(mainLabel.getText() + button.getText());   // - Add number/decimal normally.
-									secondNumber += button.getText();
-									doubleSecondNumber = Double.parseDouble(secondNumber);
-									equationText += button.getText();
-									calculation();
-								}
-							}
-						}
-					}	
+		private ButtonActionListener(CalculatorOperator operator) {
+			key = null;
+			this.operator = operator;
+		}
+
+		public void actionPerformed(ActionEvent e) {
+			if (latencyMonitor != null) {
+				latencyMonitor.pressStarted();
+			}
+			frame.setTitle("Calculator");
+			if (operator != null) {
+				if (recorder != null) {
+					recorder.operator(operator);
 				}
+				engine.press(operator);
+			}
+			else {
+				if (recorder != null) {
+					recorder.key(key);
+				}
+				engine.press(key);   // - The engine does the work, then the labels show its texts.
+			}
+			showEngine();
+			if (historyWindow != null) {
+				historyWindow.refresh();
+			}
+		}
+	}
+
+
+	// display label
+	@SuppressWarnings("serial")
+	private class DisplayLabel extends DisplayView {   // - A display that tells the latency monitor when it's painted.
+
+		private DisplayLabel(String text) {
+			super(text);
+		}
+
+		protected void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			if (latencyMonitor != null) {
+				latencyMonitor.painted();
 			}
 		}
 	}
@@ -496,31 +482,30 @@ public class Calculator {
 
 		public void mouseClicked(MouseEvent e) {
 			if (e.getSource() == mainLabel) {
-				if (calculated) {
-					copiedAnswer = new StringSelection(mainLabel.getText());
+				if (engine.isCalculated()) {
+					copiedAnswer = new StringSelection(mainLabel.getText().toString());
 					clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
 					clipboard.setContents(copiedAnswer, null);
+					metrics.copied();
 					frame.setTitle("Calculator        *copied to clipboard*");
 				}
 			}
 		}
 
 		public void mouseEntered(MouseEvent e) {   // - Buttons change to darker color when the mouse enters their bounds.
-			for (JButton button : buttons) {
-				if (e.getSource() == button) {
-					button.setBackground(new Color(220, 220, 220));
-					button.setBorder(BorderFactory.createLineBorder(new Color(220, 220, 220), 2, true));
-				}
+			if (e.getSource() instanceof JButton) {
+				JButton button = (JButton) e.getSource();
+				button.setBackground(hoverColor);
+				button.setBorder(hoverBorder);
 			}
 		}
 
 		public void mouseExited(MouseEvent e) {   // - Buttons change back to original color when mouse exits their bounds.
-			for (JButton button : buttons) {
-				if (e.getSource() == button) {
-					button.setBackground(new Color(240, 240, 240));
-					button.setBorder(BorderFactory.createLineBorder(new Color(240, 240, 240), 2, true));
-				}
-			}		
+			if (e.getSource() instanceof JButton) {
+				JButton button = (JButton) e.getSource();
+				button.setBackground(buttonColor);
+				button.setBorder(buttonBorder);
+			}
 		}
 		public void mousePressed(MouseEvent e) {
 		}
@@ -529,79 +514,102 @@ public class Calculator {
 	}
 
 
-	// calculation method
-	private void calculation() {
+	// main method
+	public static void main(String[] args) throws IOException {
+		StartupTimer startupTimer = null;
+		for (String arg : args) {
+			if (arg.equals("--startup-timing")) {
+				startupTimer = new StartupTimer(() -> {});
+			}
+			if (arg.equals("--exit-after-startup")) {   // - For making an AppCDS archive with -XX:ArchiveClassesAtExit.
+				startupTimer = new StartupTimer(() -> System.exit(0));
+			}
+		}
+		if (startupTimer != null) {
+			startupTimer.markMain();
+		}
+
+		if (args.length > 0 && args[0].equals("--batch")) {   // - Batch mode doesn't open the window.
+			BatchEvaluator.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--server")) {   // - Neither does server mode.
+			CalculatorServer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--replay")) {   // - Or replaying a recorded session.
+			SessionRecording.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--sheet")) {   // - Or a sheet of named formulas.
+			Sheet.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--stats")) {   // - Or statistics of a stream of numbers.
+			StatisticsReader.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 
-		if (dividing) {   // - Calculate and store the answer using the firstNumber, secondNumber, and operator boolean.
-			doubleAnswer = doubleFirstNumber / doubleSecondNumber;
-			long longAnswer = (long) doubleAnswer;
-			if (longAnswer == doubleAnswer) {
-				answer = longAnswer + "";
+		Calculator myCalculator = new Calculator();
+		TraceBuffer.Level traceLevel = TraceBuffer.Level.CALCULATIONS;
+		Writer traceWriter = null;
+		for (String arg : args) {
+			if (arg.equals("--eager")) {
+				myCalculator.eagerEvaluation = true;
 			}
-			else {
-				answer = doubleAnswer + "";
+			if (arg.equals("--fast-start")) {
+				myCalculator.fastStart = true;
 			}
-			answerText = "Ans = " + answer;
-			System.out.println("first number: " + firstNumber);
-			System.out.println("second number: " + secondNumber);
-			System.out.println("answer: " + answer);
-		}
-		if (multiplying) {
-			doubleAnswer = doubleFirstNumber * doubleSecondNumber;
-			long longAnswer = (long) doubleAnswer;
-			if (longAnswer == doubleAnswer) {
-				answer = longAnswer + "";
+			if (arg.equals("--latency")) {
+				myCalculator.latencyMonitor = new LatencyMonitor(STALL_THRESHOLD_MILLIS);
 			}
-			else {
-				answer = doubleAnswer + "";
+			if (arg.equals("--decimal")) {   // - 34 digits, like a decimal128.
+				myCalculator.mathContext = MathContext.DECIMAL128;
 			}
-			answerText = "Ans = " + answer;
-			System.out.println("first number: " + firstNumber);
-			System.out.println("second number: " + secondNumber);
-			System.out.println("answer: " + answer);
-		}
-		if (adding) {
-			doubleAnswer = doubleFirstNumber + doubleSecondNumber;
-			long longAnswer = (long) doubleAnswer;
-			if (longAnswer == doubleAnswer) {
-				answer = longAnswer + "";
+			if (arg.startsWith("--decimal=")) {   // - Any number of digits, like --decimal=500.
+				int digits = Integer.parseInt(arg.substring("--decimal=".length()));
+				if (digits < 1) {   // - 0 would be unlimited digits, and 1 / 3 has no exact decimal answer.
+					System.err.println("Usage: java Calculator --decimal=n, where n is at least 1");
+					return;
+				}
+				myCalculator.mathContext = new MathContext(digits);
 			}
-			else {
-				answer = doubleAnswer + "";
+			if (arg.equals("--exact")) {
+				myCalculator.exact = true;
 			}
-			answerText = "Ans = " + answer;
-			System.out.println("first number: " + firstNumber);
-			System.out.println("second number: " + secondNumber);
-			System.out.println("answer: " + answer);
-		}
-		if (subtracting) {
-			doubleAnswer = doubleFirstNumber - doubleSecondNumber;
-			long longAnswer = (long) doubleAnswer;
-			if (longAnswer == doubleAnswer) {
-				answer = longAnswer + "";
+			if (arg.startsWith("--history=")) {
+				myCalculator.historyPath = Paths.get(arg.substring("--history=".length()));
 			}
-			else {
-				answer = doubleAnswer + "";
+			if (arg.startsWith("--trace=")) {   // - off, calculations or keys.
+				traceLevel = TraceBuffer.Level.valueOf(arg.substring("--trace=".length()).toUpperCase());
+			}
+			if (arg.startsWith("--trace-file=")) {
+				traceWriter = Files.newBufferedWriter(Paths.get(arg.substring("--trace-file=".length())));
+			}
+			if (arg.startsWith("--record=")) {
+				SessionRecorder recorder = new SessionRecorder(Paths.get(arg.substring("--record=".length())));
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {   // - Write out the end of the session when the window is closed.
+					try {
+						recorder.close();
+					}
+					catch (IOException e) {
+					}
+				}));
+				myCalculator.recorder = recorder;
 			}
-			answerText = "Ans = " + answer;
-			System.out.println("first number: " + firstNumber);
-			System.out.println("second number: " + secondNumber);
-			System.out.println("answer: " + answer);
 		}
-	}
-
-
-	// reset operator booleans method
-	private void resetOperatorBooleans() {
-		dividing = false;
-		multiplying = false;
-		adding = false;
-		subtracting = false;
-	}
-
-	// main method
-	public static void main(String[] args) {
-		Calculator myCalculator = new Calculator();
+		if (traceLevel != TraceBuffer.Level.OFF) {
+			TraceBuffer tracer = new TraceBuffer(TRACE_CAPACITY, traceLevel, traceWriter != null ? traceWriter : new OutputStreamWriter(System.out));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {   // - Write out what's still in the buffer when the window is closed.
+				try {
+					tracer.close();
+				}
+				catch (IOException e) {
+				}
+			}));
+			myCalculator.tracer = tracer;
+		}
+		myCalculator.startupTimer = startupTimer;
 		javax.swing.SwingUtilities.invokeLater(()->myCalculator.createAndShowGUI());
 	}
 
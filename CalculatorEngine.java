@@ -0,0 +1,885 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ *
+ * The state and logic of the calculator, without any Swing components.
+ *
+ * The engine holds everything the calculator knows: the first number, the operator, the second number,
+ * the answer, and the text that the main display and the previous label should show.
+ * Each button on the calculator is a Key, and pressing a key with press(Key) updates the state exactly
+ * like clicking that button in the window does.
+ *
+ * The engine doesn't need a JFrame or the event dispatch thread, so it can be driven directly by
+ * a stream of keys with pressAll(Key[]). The Calculator class is a view that displays getMainText()
+ * and getPreviousText() after every press.
+ *
+ * By default the answer isn't calculated on every digit of the second number. The digits only mark the answer as
+ * out of date, and it's calculated once when something needs it: equals, the next operator, or getAnswer().
+ * A burst of digits from a paste or a replay is calculated once instead of once per digit.
+ * setEagerEvaluation(true) calculates on every digit again, like "10 + 1", "10 + 12", "10 + 123".
+ *
+ * setMathContext(mc) switches to decimal mode, where answers are calculated with BigDecimals to mc's precision
+ * instead of with doubles, so "0.1 + 0.2" is 0.3 and "1 / 3" can have hundreds of digits. The typed numbers
+ * become BigDecimals only when an answer is calculated, so typing a long number costs no more than in double mode.
+ *
+ * setExact(true) switches to exact mode, where answers are fractions (Rational), so "1 / 3 * 3" is exactly 1. An answer
+ * is shown as a decimal when its decimals end and as a fraction like "1/3" when they'd repeat, so the text that becomes
+ * the next first number is still exact. The numbers are kept in longs, and only become BigIntegers when they overflow.
+ * A square root that isn't a fraction, like the square root of 2, and dividing by zero fall back to the double answer,
+ * or to the decimal answer if a math context is set too.
+ *
+ * The operations themselves are CalculatorOperators in the OperatorRegistry: the built-in ones for the operator keys,
+ * square and square root, and any that plug-ins add, which are pressed with press(CalculatorOperator). The engine only
+ * keeps the index of each operator, and the bits of the binary ones that were entered, so a new operator doesn't need
+ * a new flag or another copy of the calculation.
+ *
+ * setHistory(log) adds every finished equation to a HistoryLog: equals, square, square root, and an operator that
+ * finishes the equation before it.
+ *
+ * setMetrics(metrics) counts every key and calculation in CalculatorMetrics, and times each calculation.
+ *
+ * setUndoEnabled(true) keeps every state the engine has been in, so undo() and redo() can go back and forward through
+ * all of them, even past equals and all clear. Before each press the state is saved in a Snapshot, which never changes
+ * after it's made. The texts are the engine's own Strings, which never change either, so they're shared instead of
+ * copied. The undo and redo stacks are linked lists of snapshots that are only ever added to at the front, so a step
+ * takes the same time and memory however long the session is. Presses that don't change anything aren't saved.
+ * Equations already added to the history, traced or counted stay there when they're undone.
+ *
+ */
+
+public class CalculatorEngine {
+
+	// keys
+	public enum Key {
+		SQUARE("x\u00B2", "^\u00B2"),   // - Keys are declared in the same order as the buttons in the calculator's grid.
+		SQRT("\u221A", "r\u221A"),
+		DELETE("CE", ""),
+		CLEAR("AC", ""),
+		SEVEN("7", "7"),
+		EIGHT("8", "8"),
+		NINE("9", "9"),
+		DIVIDE("\u00F7", "/\u00F7"),
+		FOUR("4", "4"),
+		FIVE("5", "5"),
+		SIX("6", "6"),
+		MULTIPLY("\u00D7", "*\u00D7"),
+		ONE("1", "1"),
+		TWO("2", "2"),
+		THREE("3", "3"),
+		SUBTRACT("-", "-\u2212"),
+		DECIMAL(".", "."),
+		ZERO("0", "0"),
+		EQUALS("=", "="),
+		ADD("+", "+");
+
+		private static final Key[] LATIN_KEYS = new Key[256];   // - Keys indexed by the character typed for them, so looking up a typed character is one array access.
+
+		static {
+			for (Key key : values()) {
+				for (char c : key.typedChars.toCharArray()) {
+					if (c < LATIN_KEYS.length) {
+						LATIN_KEYS[c] = key;
+					}
+				}
+			}
+		}
+
+		private final String text;   // - Text shown on the button and added to the display.
+		private final String typedChars;   // - Characters that press this key when they are typed on a keyboard.
+
+		Key(String text, String typedChars) {
+			this.text = text;
+			this.typedChars = typedChars;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public String getTypedChars() {
+			return typedChars;
+		}
+
+		public static Key forChar(char c) {   // - Returns the key typed with this character, or null if there isn't one.
+			if (c < LATIN_KEYS.length) {
+				return LATIN_KEYS[c];
+			}
+			if (c == '\u221A') {   // - The only typed characters outside of Latin-1.
+				return SQRT;
+			}
+			if (c == '\u2212') {
+				return SUBTRACT;
+			}
+			return null;
+		}
+
+		public boolean isPrintable() {   // - Printable means it can be displayed as part of the equation.
+			return this != SQUARE && this != SQRT && this != DELETE && this != CLEAR && this != EQUALS;
+		}
+
+		public boolean isOperator() {
+			return this == DIVIDE || this == MULTIPLY || this == ADD || this == SUBTRACT;
+		}
+	}
+
+
+	// fields
+	private static final DisplayText ZERO = DisplayText.of("0");   // - Texts that are used again and again, made once.
+	private static final DisplayText ZERO_POINT = DisplayText.of("0.");
+	private static final DisplayText ANSWER_PREFIX = DisplayText.of("Ans = ");
+
+	private DisplayText mainText;   // - Text of the main display.
+	private DisplayText previousText;   // - Text of the small label above the main display.
+
+	private long operators;   // - A bit for each binary operator that's been entered, at its index in OperatorRegistry.
+
+	private DisplayText firstNumber;   // - First group of numbers that are entered in the equation.
+	private double doubleFirstNumber;   // - Value of firstNumber to be used in calculations.
+	private NumberAccumulator firstAccumulator;   // - Keeps the value of firstNumber up to date as digits are added and deleted, so it never has to be parsed again.
+	private boolean addingToFirstNumber;   // - Stops or starts adding to firstNumber.
+	private DisplayText secondNumber;
+	private double doubleSecondNumber;
+	private NumberAccumulator secondAccumulator;
+	private boolean addingToSecondNumber;
+
+	private DisplayText answer;   // - The answer so it can be displayed. Null while the answer is only in the formatter's buffer.
+	private String decimalAnswer;   // - The last calculated answer if it was calculated with BigDecimals. Null if it's in the formatter's buffer instead.
+	private Rational exactAnswer;   // - The last calculated answer in exact mode, if exactAnswered is true.
+	private boolean exactAnswered;   // - True if the answer is exactAnswer, and not in decimalAnswer or the formatter's buffer.
+	private Rational firstRational;   // - Values of the numbers in exact mode. Calculated into, never replaced.
+	private Rational secondRational;
+	private double doubleAnswer;   // - The calculated answer that is formatted into a string so it can be displayed.
+	private DisplayText answerText;   // - Text in the previousLabel to show the answer to the previous equation. Null until it's needed.
+	private AnswerFormatter formatter;   // - Formats calculated answers without creating Strings.
+	private DisplayText equationText; // - Text in the previousLabel to show the equation that returned the current answer being displayed.
+
+	private boolean calculated;   // - True if the equals button was just entered. Lets the user start a new equation right away.
+	private boolean decimalEntered;   // - True if a decimal been entered, prevents multiple decimals in one number.
+	private boolean operatorEntered;   // - True if an operator has just been entered.
+
+	private boolean eagerEvaluation;   // - True if the answer is calculated on every digit of the second number.
+	private boolean answerPending;   // - True if the second number changed and the answer hasn't been calculated for it yet.
+
+	private TraceBuffer tracer;   // - Every calculation and key is traced to it. Null if nothing is traced.
+	private CalculatorMetrics metrics;   // - Counts keys and calculations, and times the calculations. Null if nothing is counted.
+	private MathContext mathContext;   // - Precision of answers in decimal mode. Null in double mode.
+	private boolean exact;   // - True in exact mode.
+	private HistoryLog history;   // - Every finished equation is added to it. Null if there's no history.
+
+	private boolean undoEnabled;   // - True if a snapshot is saved before every press. Off by default, so sessions and batch engines don't keep them.
+	private Step undos;   // - Top of the undo stack, the state before the last press. Null if there's nothing to undo.
+	private Step redos;   // - Top of the redo stack. Emptied by any new press.
+
+
+	// constructor
+	public CalculatorEngine() {
+		firstAccumulator = new NumberAccumulator();
+		secondAccumulator = new NumberAccumulator();
+		formatter = new AnswerFormatter();
+		exactAnswer = new Rational();
+		firstRational = new Rational();
+		secondRational = new Rational();
+		eagerEvaluation = false;
+		tracer = null;
+		metrics = null;
+		mathContext = null;
+		reset();
+	}
+
+
+	// reset method
+	public void reset() {   // - Puts the engine back to how it was when it was created, without creating any new objects.
+		mainText = ZERO;   // - Initialize the variables.
+		previousText = DisplayText.EMPTY;
+		operatorEntered = false;
+		operators = 0;
+		firstNumber = DisplayText.EMPTY;
+		doubleFirstNumber = 0;
+		firstAccumulator.clear();
+		addingToFirstNumber = true;
+		secondNumber = DisplayText.EMPTY;
+		doubleSecondNumber = 0;
+		secondAccumulator.clear();
+		addingToSecondNumber = false;
+		answer = DisplayText.EMPTY;
+		doubleAnswer = 0;
+		decimalAnswer = null;
+		exactAnswered = false;
+		equationText = DisplayText.EMPTY;
+		answerText = DisplayText.EMPTY;
+		calculated = false;
+		decimalEntered = false;
+		answerPending = false;
+		undos = null;
+		redos = null;
+	}
+
+
+	// press all method
+	public void pressAll(Key[] keys) {
+		for (Key key : keys) {
+			press(key);
+		}
+	}
+
+
+	// press method
+	public void press(Key key) {
+		Snapshot before = undoEnabled ? new Snapshot(this) : null;
+		if (tracer != null) {
+			tracer.key(key);
+		}
+		if (metrics != null) {
+			metrics.pressed(key);
+		}
+		if (!key.isPrintable() || key.isOperator()) {   // - Only digits and decimals can be pressed without needing the answer.
+			calculatePendingAnswer();
+		}
+
+		switch (key) {
+		case SQUARE:
+		case SQRT:
+			unary(OperatorRegistry.indexOf(key));
+			break;
+		case DELETE:
+			delete();
+			break;
+		case CLEAR:
+			clear();
+			break;
+		case EQUALS:
+			equals();
+			break;
+		case DIVIDE:
+		case MULTIPLY:
+		case ADD:
+		case SUBTRACT:
+			operator(OperatorRegistry.indexOf(key));
+			break;
+		default:
+			number(key);
+			break;
+		}
+		saveStep(before);
+	}
+
+	public void press(CalculatorOperator operator) {   // - For operators that don't have a key, like the ones plug-ins add. It isn't traced or counted as a key.
+		int index = OperatorRegistry.indexOf(operator);
+		if (index < 0) {
+			throw new IllegalArgumentException("Operator " + operator.getName() + " isn't in the OperatorRegistry");
+		}
+		Snapshot before = undoEnabled ? new Snapshot(this) : null;
+		calculatePendingAnswer();
+		if (operator.isUnary()) {
+			unary(index);
+		}
+		else {
+			operator(index);
+		}
+		saveStep(before);
+	}
+
+	private void saveStep(Snapshot before) {   // - Saves the state before a press on the undo stack, if undo is on and the press changed something.
+		if (before != null && !before.isSameAs(this)) {
+			undos = new Step(before, undos);
+			redos = null;   // - A new press starts a new future.
+		}
+	}
+
+
+	// undo and redo methods
+	public boolean undo() {   // - Goes back to the state before the last press. Returns false if there's nothing to undo.
+		if (undos == null) {
+			return false;
+		}
+		redos = new Step(new Snapshot(this), redos);
+		restore(undos.snapshot);
+		undos = undos.next;
+		return true;
+	}
+
+	public boolean redo() {   // - Goes forward again to the state before the last undo. Returns false if there's nothing to redo.
+		if (redos == null) {
+			return false;
+		}
+		undos = new Step(new Snapshot(this), undos);
+		restore(redos.snapshot);
+		redos = redos.next;
+		return true;
+	}
+
+
+	// restore method
+	private void restore(Snapshot snapshot) {   // - Puts every field back the way it was when the snapshot was made.
+		mainText = snapshot.mainText;
+		previousText = snapshot.previousText;
+		operators = snapshot.operators;
+		firstNumber = snapshot.firstNumber;
+		doubleFirstNumber = snapshot.doubleFirstNumber;
+		firstAccumulator.copy(snapshot.firstAccumulator);
+		addingToFirstNumber = snapshot.addingToFirstNumber;
+		secondNumber = snapshot.secondNumber;
+		doubleSecondNumber = snapshot.doubleSecondNumber;
+		secondAccumulator.copy(snapshot.secondAccumulator);
+		addingToSecondNumber = snapshot.addingToSecondNumber;
+		answer = snapshot.answer;
+		decimalAnswer = snapshot.decimalAnswer;
+		exactAnswer.set(snapshot.exactAnswer);
+		exactAnswered = snapshot.exactAnswered;
+		doubleAnswer = snapshot.doubleAnswer;
+		answerText = snapshot.answerText;
+		formatter.format(snapshot.formattedValue);   // - A double takes at most a few dozen chars, so this doesn't grow with the session.
+		equationText = snapshot.equationText;
+		calculated = snapshot.calculated;
+		decimalEntered = snapshot.decimalEntered;
+		operatorEntered = snapshot.operatorEntered;
+		answerPending = snapshot.answerPending;
+	}
+
+
+	// unary method
+	private void unary(int index) {   // - Square, square root, or a plug-in's unary operator, on the first number or the answer.
+		if (!mainText.isEmpty()) {
+			if (calculated || (addingToFirstNumber && !firstNumber.isEmpty())) {
+				CalculatorOperator operator = OperatorRegistry.get(index);
+				long start = metrics == null ? 0 : System.nanoTime();
+				doubleAnswer = OperatorRegistry.apply(index, doubleFirstNumber, 0);
+				if (exact && operator.exact(exactAnswer, firstRational(), null)) {
+					formatExactAnswer();
+				}
+				else {
+					formatAnswer(mathContext == null ? null : operator.decimal(firstDecimal(), null, mathContext));
+				}
+				measure(index, start);
+				record(operator.equation(firstNumber));
+
+				firstNumber = answer();   // - Update texts and numbers
+				doubleFirstNumber = doubleAnswer;
+				firstAccumulator.set(firstNumber);
+				equationText = operator.equation(firstNumber);
+				mainText = answer;
+				calculated = true;
+			}
+		}
+	}
+
+
+	// delete method
+	private void delete() {
+		if (!mainText.isEmpty()) {
+			if (addingToFirstNumber && !firstNumber.isEmpty()) {   // - Deleting from firstNumber.
+				char lastEntry = firstNumber.lastChar();
+				firstNumber = firstNumber.withoutLast();   // - Delete last entry from firstNumber.
+				if (firstAccumulator.isPlain()) {
+					firstAccumulator.removeLast(lastEntry);
+				}
+				if (!firstAccumulator.isPlain() || !firstAccumulator.hasDigits()) {   // - If deleting last entry leaves no digits, or firstNumber is an answer like "Error" that can't be edited, then firstNumber becomes 0. So does an answer like "1.5E20", which would become "1.5E2", a different number, and then "1.5E", which isn't one.
+					firstNumber = ZERO;
+					firstAccumulator.set(firstNumber);
+				}
+				doubleFirstNumber = firstAccumulator.doubleValue(firstNumber);   // - Update these variables with the new firstNumber.
+				answer = firstNumber;
+				doubleAnswer = doubleFirstNumber;
+				equationText = firstNumber;
+				mainText = firstNumber;   // - Display the new firstNumber
+			}
+
+			if (addingToSecondNumber && secondNumber.isEmpty()) {   // - Deleting the operator.
+				answer = firstNumber;
+				doubleAnswer = doubleFirstNumber;
+				equationText = firstNumber;
+				mainText = firstNumber;
+				addingToFirstNumber = true;   // - Start adding to firstNumber again.
+				addingToSecondNumber = false;
+				resetOperators();   // - Reset operators.
+			}
+
+			if (addingToSecondNumber && !secondNumber.isEmpty()) {   // - Deleting from secondNumber.
+
+				if (secondNumber.length() == 1) {   // - Deleting last entry leaves nothing in secondNumber.
+					calculatePendingAnswer();   // - Keep answerText from the last calculation.
+					secondNumber = DisplayText.EMPTY;
+					secondAccumulator.clear();
+					answer = firstNumber;   // - answer is firstNumber until a new secondNumber is entered.
+					doubleAnswer = doubleFirstNumber;
+					equationText = equationText.withoutLast();   // - Delete last entry from equationText and mainText.
+					mainText = mainText.withoutLast();
+				}
+				else {   // - Deleting lastEntry leaves a number in secondNumber.
+					char lastEntry = secondNumber.lastChar();
+					secondNumber = secondNumber.withoutLast();
+					secondAccumulator.removeLast(lastEntry);
+					doubleSecondNumber = secondAccumulator.doubleValue(secondNumber);
+					equationText = equationText.withoutLast();   // - Delete last entry from equationText and mainText.
+					mainText = mainText.withoutLast();
+					requestCalculation();
+				}
+			}
+		}
+	}
+
+
+	// clear method
+	private void clear() {
+		mainText = ZERO;   // - Clear the main display.
+		previousText = answerText();   // - previousLabel displays the previous answer
+		resetOperators();   // - Reset operators.
+		firstNumber = DisplayText.EMPTY;   // - Reset numbers
+		doubleFirstNumber = 0;
+		firstAccumulator.clear();
+		addingToFirstNumber = true;
+		secondNumber = DisplayText.EMPTY;
+		doubleSecondNumber = 0;
+		secondAccumulator.clear();
+		addingToSecondNumber = false;
+		answer = ZERO;   // - Set answer to 0 just to display something if equals is entered.
+		doubleAnswer = 0;
+		equationText = DisplayText.EMPTY;
+		decimalEntered = false;
+		operatorEntered = false;
+	}
+
+
+	// equals method
+	private void equals() {
+		mainText = answer();   // - The main display shows the answer.
+		previousText = equationText.append(" = ");   // - previousLabel displays the previous equation.
+		record(equationText);
+		resetOperators();   // - Reset operators.
+		firstNumber = answer;   // - Store the answer as the first number so it can be used in the next equation.
+		doubleFirstNumber = doubleAnswer;   // - doubleAnswer is always the value of answer, so it doesn't need to be parsed.
+		firstAccumulator.set(firstNumber);
+		addingToFirstNumber = true;   // - If a number is selected right after the answer is calculated, the answer is replaced by a new first number.
+		secondNumber = DisplayText.EMPTY;
+		doubleSecondNumber = 0;
+		secondAccumulator.clear();
+		addingToSecondNumber = false;
+		calculated = true;
+		decimalEntered = false;
+		operatorEntered = false;
+	}
+
+
+	// operator method
+	private void operator(int index) {   // - A binary operator, built in or from a plug-in.
+		decimalEntered = false;   // - Reset decimalEntered because an operator means the number is complete.
+		operators |= 1L << index;   // - Tell the calculator which operation to do.
+		String text = OperatorRegistry.get(index).getText();
+
+		if (addingToSecondNumber == true && !secondNumber.isEmpty()) {   // - This means the second number is complete so calculate the first equation and start the next one.
+			mainText = answer();   // - Display the answer.
+			record(equationText);   // - equationText doesn't have the new operator yet.
+			firstNumber = answer;   // - Start the next equation with the answer as the firstNumber.
+			doubleFirstNumber = doubleAnswer;
+			firstAccumulator.set(firstNumber);
+			secondNumber = DisplayText.EMPTY;
+			doubleSecondNumber = 0;
+			secondAccumulator.clear();
+			operatorEntered = true;
+		}
+
+		if (operatorEntered == false || !mainText.isEmpty()) {   // -These conditions prevent starting an equation with an operator and entering two operators in a row.
+			mainText = mainText.append(" " + text + " ");   // - Add operator normally.
+			operatorEntered = true;
+			addingToFirstNumber = false;   // - The firstNumber is complete so start adding to the secondNumber.
+			addingToSecondNumber = true;
+			equationText = equationText.append(" " + text + " ");
+		}
+	}
+
+
+	// number method
+	private void number(Key key) {
+		if (addingToFirstNumber) {
+
+			if (calculated) {   // - Start a new equation. The user isn't using the previous answer so reset firstNumber and equationText.
+				previousText = answerText();   // - previousLabel displays previous answer.
+				firstNumber = DisplayText.EMPTY;
+				doubleFirstNumber = 0;
+				firstAccumulator.clear();
+				mainText = DisplayText.EMPTY;   // - Clear the main display.
+				equationText = DisplayText.EMPTY;
+				answer = DisplayText.EMPTY;
+				calculated = false;
+			}
+
+			if (!firstAccumulator.isPlain()) {   // - firstNumber is an answer that can't be typed onto, like "2/7", "1.5E20" or "Error", left by deleting the operator after it. Start a new number, like delete() does.
+				firstNumber = DisplayText.EMPTY;
+				doubleFirstNumber = 0;
+				firstAccumulator.clear();
+				mainText = DisplayText.EMPTY;
+				equationText = DisplayText.EMPTY;
+				answer = DisplayText.EMPTY;
+				decimalEntered = false;
+			}
+
+			if (key == Key.DECIMAL && firstNumber.isEmpty() && !decimalEntered) {   // - If this is the start of a new equation, this displays "0." instead of "."
+				firstNumber = ZERO_POINT;
+				firstAccumulator.set(firstNumber);
+				mainText = firstNumber;
+				answer = ZERO_POINT;
+				doubleAnswer = 0.;
+				equationText = equationText.append(ZERO_POINT);
+				decimalEntered = true;
+			}
+
+			else if (key != Key.DECIMAL || (!decimalEntered && !firstAccumulator.hasDecimalPoint())){   // - These conditions prevent multiple decimals in a row. An answer that's typed onto after deleting its operator, like "3.25", has a decimal point that decimalEntered doesn't know about.
+				if (key == Key.DECIMAL) {
+					decimalEntered = true;
+				}
+
+				if (mainText.contentEquals("0")) {   // - When a number is entered after every number has been deleted, the display will show "5" instead of "05"
+					mainText = DisplayText.EMPTY;
+					equationText = DisplayText.EMPTY;
+					firstNumber = DisplayText.EMPTY;
+					firstAccumulator.clear();
+				}
+				mainText = mainText.append(key.getText());   // - Add number/decimal normally.
+				firstNumber = firstNumber.append(key.getText());
+				firstAccumulator.append(key.getText().charAt(0));
+				doubleFirstNumber = firstAccumulator.doubleValue(firstNumber);
+				answer = answer().append(key.getText());
+				doubleAnswer = doubleFirstNumber;   // - answer is firstNumber, sometimes with an extra "0" in front, so it has the same value.
+				equationText = equationText.append(key.getText());
+			}
+		}
+
+		if (addingToSecondNumber) {
+			if (key == Key.DECIMAL && secondNumber.isEmpty() && !decimalEntered) {   // - If this is the start of a new secondNumber, this displays "0." instead of "."
+				secondNumber = ZERO_POINT;
+				secondAccumulator.set(secondNumber);
+				mainText = mainText.append(secondNumber);
+				answer = ZERO_POINT;
+				doubleAnswer = 0.;
+				equationText = equationText.append(ZERO_POINT);
+				decimalEntered = true;
+			}
+			else if (key != Key.DECIMAL || !decimalEntered){   // - These conditions prevent multiple decimals in a row.
+				if (key == Key.DECIMAL) {
+					decimalEntered = true;
+				}
+				mainText = mainText.append(key.getText());   // - Add number/decimal normally.
+				secondNumber = secondNumber.append(key.getText());
+				secondAccumulator.append(key.getText().charAt(0));
+				doubleSecondNumber = secondAccumulator.doubleValue(secondNumber);
+				equationText = equationText.append(key.getText());
+				requestCalculation();
+			}
+		}
+	}
+
+
+	// request calculation method
+	private void requestCalculation() {   // - The second number changed, so the answer is out of date.
+		if (eagerEvaluation) {
+			calculation();
+		}
+		else {
+			answerPending = true;
+		}
+	}
+
+
+	// calculate pending answer method
+	private void calculatePendingAnswer() {
+		if (answerPending) {
+			answerPending = false;
+			calculation();
+		}
+	}
+
+
+	// calculation method
+	private void calculation() {
+		long start = metrics == null ? 0 : System.nanoTime();   // - Reading the clock costs a little, so it's only read when it's measured.
+
+		for (long remaining = operators; remaining != 0; remaining &= remaining - 1) {   // - Calculate and store the answer using the firstNumber, secondNumber, and each operator that was entered, in the order of their indexes.
+			int index = Long.numberOfTrailingZeros(remaining);
+			doubleAnswer = OperatorRegistry.apply(index, doubleFirstNumber, doubleSecondNumber);
+			CalculatorOperator operator = OperatorRegistry.get(index);
+			if (exact && operator.exact(exactAnswer, firstRational(), secondRational())) {
+				formatExactAnswer();
+			}
+			else {
+				formatAnswer(mathContext == null ? null : operator.decimal(firstDecimal(), secondDecimal(), mathContext));
+			}
+			trace(index);
+			measure(index, start);
+		}
+	}
+
+
+	// record method
+	private void record(DisplayText equation) {   // - Adds a finished equation and its answer to the history.
+		if (history != null) {
+			history.append(equation, answer(), doubleAnswer);
+		}
+	}
+
+
+	// trace method
+	private void trace(int operator) {   // - operator is an index in OperatorRegistry.
+		if (tracer != null) {   // - Trace the numbers used in the calculation that just happened. It's written out later, on the tracer's thread.
+			tracer.calculation(operator, doubleFirstNumber, doubleSecondNumber, doubleAnswer);
+		}
+	}
+
+
+	// measure method
+	private void measure(int operator, long start) {   // - Counts the calculation that just happened, and how long it took since start.
+		if (metrics != null) {
+			metrics.calculated(operator, doubleSecondNumber, doubleAnswer, System.nanoTime() - start);
+		}
+	}
+
+
+	// format answer method
+	private void formatAnswer(BigDecimal decimal) {   // - The new answer is written into the formatter's buffer. It only becomes a DisplayText when something needs it.
+		if (decimal != null) {   // - Decimal mode, and the answer is a number. Otherwise doubleAnswer shows "Error" or infinity.
+			doubleAnswer = decimal.doubleValue();
+			decimalAnswer = DecimalMath.format(decimal);
+		}
+		else {
+			formatter.format(doubleAnswer);
+			decimalAnswer = null;
+		}
+		exactAnswered = false;
+		answer = null;
+		answerText = null;
+	}
+
+	private void formatExactAnswer() {   // - The new answer is in exactAnswer. Like the formatter's buffer, it only becomes text when something needs it.
+		doubleAnswer = exactAnswer.doubleValue();
+		decimalAnswer = null;
+		exactAnswered = true;
+		answer = null;
+		answerText = null;
+	}
+
+
+	// answer method
+	private DisplayText answer() {
+		if (answer == null) {
+			answer = DisplayText.of(answerString());
+		}
+		return answer;
+	}
+
+
+	// answer text method
+	private DisplayText answerText() {
+		if (answerText == null) {   // - decimalAnswer, exactAnswer and the formatter's buffer still have the answer that answerText is for, because only formatAnswer() and formatExactAnswer() write to them.
+			answerText = ANSWER_PREFIX.append(answerString());
+		}
+		return answerText;
+	}
+
+	private String answerString() {
+		if (decimalAnswer != null) {
+			return decimalAnswer;
+		}
+		return exactAnswered ? exactAnswer.toString() : formatter.toString();
+	}
+
+
+	// decimal value methods
+	private BigDecimal firstDecimal() {   // - Null if firstNumber isn't a number, like "Error".
+		return firstAccumulator.decimalValue(firstNumber);
+	}
+
+	private BigDecimal secondDecimal() {
+		return secondAccumulator.decimalValue(secondNumber);
+	}
+
+
+	// rational value methods
+	private Rational firstRational() {   // - Null if firstNumber isn't a number, like "Error".
+		return firstAccumulator.rationalValue(firstNumber, firstRational) ? firstRational : null;
+	}
+
+	private Rational secondRational() {
+		return secondAccumulator.rationalValue(secondNumber, secondRational) ? secondRational : null;
+	}
+
+
+	// reset operators method
+	private void resetOperators() {
+		operators = 0;
+	}
+
+
+	// getters and setters
+	public String getMainText() {
+		return mainText.toString();
+	}
+
+	public String getPreviousText() {
+		return previousText.toString();
+	}
+
+	public String getEquationText() {   // - The equation so far. It grows with every key until equals, square, square root or clear.
+		return equationText.toString();
+	}
+
+	public DisplayText getMainDisplay() {   // - The same texts without making a String, for displays that only show the end of a long text.
+		return mainText;
+	}
+
+	public DisplayText getPreviousDisplay() {
+		return previousText;
+	}
+
+	public DisplayText getEquationDisplay() {
+		return equationText;
+	}
+
+	public String getAnswer() {
+		calculatePendingAnswer();
+		return answer().toString();
+	}
+
+	public double getDoubleAnswer() {
+		calculatePendingAnswer();
+		return doubleAnswer;
+	}
+
+	public boolean isCalculated() {
+		return calculated;
+	}
+
+	public void setEagerEvaluation(boolean eagerEvaluation) {
+		if (eagerEvaluation) {
+			calculatePendingAnswer();
+		}
+		this.eagerEvaluation = eagerEvaluation;
+	}
+
+	public void setTracer(TraceBuffer tracer) {   // - Null stops tracing.
+		this.tracer = tracer;
+	}
+
+	public void setMetrics(CalculatorMetrics metrics) {   // - Null stops counting.
+		this.metrics = metrics;
+	}
+
+	public MathContext getMathContext() {
+		return mathContext;
+	}
+
+	public void setMathContext(MathContext mathContext) {   // - Null goes back to double mode. Answers already calculated aren't changed.
+		this.mathContext = mathContext;
+	}
+
+	public boolean isExact() {
+		return exact;
+	}
+
+	public void setExact(boolean exact) {   // - Answers already calculated aren't changed.
+		this.exact = exact;
+	}
+
+	public void setHistory(HistoryLog history) {   // - Null stops recording.
+		this.history = history;
+	}
+
+	public void setUndoEnabled(boolean undoEnabled) {   // - Turning it off forgets every snapshot.
+		this.undoEnabled = undoEnabled;
+		if (!undoEnabled) {
+			undos = null;
+			redos = null;
+		}
+	}
+
+	public boolean canUndo() {
+		return undos != null;
+	}
+
+	public boolean canRedo() {
+		return redos != null;
+	}
+
+
+	// snapshot
+	private static final class Snapshot {   // - Everything press() can change. Never changed after it's made.
+
+		private final DisplayText mainText;
+		private final DisplayText previousText;
+		private final long operators;
+		private final DisplayText firstNumber;
+		private final double doubleFirstNumber;
+		private final NumberAccumulator firstAccumulator = new NumberAccumulator();   // - Copies, since the engine's accumulators change.
+		private final boolean addingToFirstNumber;
+		private final DisplayText secondNumber;
+		private final double doubleSecondNumber;
+		private final NumberAccumulator secondAccumulator = new NumberAccumulator();
+		private final boolean addingToSecondNumber;
+		private final DisplayText answer;
+		private final String decimalAnswer;
+		private final Rational exactAnswer = new Rational();
+		private final boolean exactAnswered;
+		private final double doubleAnswer;
+		private final DisplayText answerText;
+		private final double formattedValue;   // - What the formatter's buffer had in it.
+		private final DisplayText equationText;
+		private final boolean calculated;
+		private final boolean decimalEntered;
+		private final boolean operatorEntered;
+		private final boolean answerPending;
+
+		private Snapshot(CalculatorEngine engine) {
+			mainText = engine.mainText;
+			previousText = engine.previousText;
+			operators = engine.operators;
+			firstNumber = engine.firstNumber;
+			doubleFirstNumber = engine.doubleFirstNumber;
+			firstAccumulator.copy(engine.firstAccumulator);
+			addingToFirstNumber = engine.addingToFirstNumber;
+			secondNumber = engine.secondNumber;
+			doubleSecondNumber = engine.doubleSecondNumber;
+			secondAccumulator.copy(engine.secondAccumulator);
+			addingToSecondNumber = engine.addingToSecondNumber;
+			answer = engine.answer;
+			decimalAnswer = engine.decimalAnswer;
+			exactAnswer.set(engine.exactAnswer);
+			exactAnswered = engine.exactAnswered;
+			doubleAnswer = engine.doubleAnswer;
+			answerText = engine.answerText;
+			formattedValue = engine.formatter.getValue();
+			equationText = engine.equationText;
+			calculated = engine.calculated;
+			decimalEntered = engine.decimalEntered;
+			operatorEntered = engine.operatorEntered;
+			answerPending = engine.answerPending;
+		}
+
+		private boolean isSameAs(CalculatorEngine engine) {   // - The engine changes a text by making a new DisplayText, so the same one means the same text.
+			return mainText == engine.mainText && previousText == engine.previousText && firstNumber == engine.firstNumber
+					&& secondNumber == engine.secondNumber && answer == engine.answer && decimalAnswer == engine.decimalAnswer
+					&& answerText == engine.answerText && equationText == engine.equationText
+					&& operators == engine.operators
+					&& addingToFirstNumber == engine.addingToFirstNumber && addingToSecondNumber == engine.addingToSecondNumber
+					&& calculated == engine.calculated && decimalEntered == engine.decimalEntered && operatorEntered == engine.operatorEntered
+					&& answerPending == engine.answerPending
+					&& exactAnswered == engine.exactAnswered && exactAnswer.equals(engine.exactAnswer)
+					&& Double.doubleToRawLongBits(doubleFirstNumber) == Double.doubleToRawLongBits(engine.doubleFirstNumber)
+					&& Double.doubleToRawLongBits(doubleSecondNumber) == Double.doubleToRawLongBits(engine.doubleSecondNumber)
+					&& Double.doubleToRawLongBits(doubleAnswer) == Double.doubleToRawLongBits(engine.doubleAnswer)
+					&& Double.doubleToRawLongBits(formattedValue) == Double.doubleToRawLongBits(engine.formatter.getValue());
+		}
+	}
+
+
+	// step
+	private static final class Step {   // - One entry of the undo or redo stack. The rest of the stack is shared, never copied.
+
+		private final Snapshot snapshot;
+		private final Step next;
+
+		private Step(Snapshot snapshot, Step next) {
+			this.snapshot = snapshot;
+			this.next = next;
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *
+ * Counts what the calculator does and how long its calculations take, and shows the numbers through JMX.
+ *
+ * Engines with setMetrics(metrics) count every key that's pressed, every operation that's calculated, answers that
+ * divided by zero or aren't a number, and the time each calculation took. Calculator counts clipboard copies too.
+ * register() publishes the counts as an MBean named "Calculator:type=Metrics", so they can be watched with JConsole.
+ *
+ * Many engines on many threads can share the same metrics without waiting for each other. The counters are LongAdders,
+ * which spread their count over cells when threads collide, and the latencies go into one of several LatencyHistograms
+ * picked by the thread, which are only added together when they're read.
+ *
+ */
+
+public class CalculatorMetrics implements CalculatorMetricsMBean {
+
+	// fields
+	static final String NAME = "Calculator:type=Metrics";
+
+	private final LongAdder[] presses = newAdders(CalculatorEngine.Key.values().length);   // - Indexed by the ordinal of the key.
+	private final LongAdder[] operations = newAdders(OperatorRegistry.size());   // - Indexed by the operator's index in OperatorRegistry, so plug-in operators are counted too.
+	private final LongAdder divideByZeros = new LongAdder();
+	private final LongAdder notANumbers = new LongAdder();
+	private final LongAdder clipboardCopies = new LongAdder();
+	private final LatencyHistogram[] latencies;   // - Stripes, each guarded by itself. A power of two, so a thread's stripe is picked with a mask.
+
+
+	// constructor
+	public CalculatorMetrics() {
+		int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+		latencies = new LatencyHistogram[stripes];
+		for (int i = 0; i < stripes; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	private static LongAdder[] newAdders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+
+	// register method
+	public void register() throws JMException {   // - Publishes the metrics in this JVM's platform MBean server.
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+	}
+
+
+	// count methods
+	public void pressed(CalculatorEngine.Key key) {
+		presses[key.ordinal()].increment();
+	}
+
+	public void calculated(int operator, double second, double answer, long nanos) {   // - operator is an index in OperatorRegistry. second is only looked at for divide.
+		operations[operator].increment();
+		if (operator == BuiltInOperator.DIVIDE.ordinal() && second == 0) {
+			divideByZeros.increment();
+		}
+		if (Double.isNaN(answer)) {
+			notANumbers.increment();
+		}
+		LatencyHistogram stripe = latencies[(int) Thread.currentThread().getId() & (latencies.length - 1)];
+		synchronized (stripe) {   // - Only threads that share a stripe ever wait here, and only for a few nanoseconds.
+			stripe.record(nanos);
+		}
+	}
+
+	public void copied() {
+		clipboardCopies.increment();
+	}
+
+
+	// latency method
+	private LatencyHistogram getLatencies() {   // - All of the stripes added together.
+		LatencyHistogram total = new LatencyHistogram();
+		for (LatencyHistogram stripe : latencies) {
+			synchronized (stripe) {
+				total.add(stripe);
+			}
+		}
+		return total;
+	}
+
+
+	// getters
+	public long getDivides() {
+		return operations[BuiltInOperator.DIVIDE.ordinal()].sum();
+	}
+
+	public long getMultiplies() {
+		return operations[BuiltInOperator.MULTIPLY.ordinal()].sum();
+	}
+
+	public long getAdds() {
+		return operations[BuiltInOperator.ADD.ordinal()].sum();
+	}
+
+	public long getSubtracts() {
+		return operations[BuiltInOperator.SUBTRACT.ordinal()].sum();
+	}
+
+	public long getSquares() {
+		return operations[BuiltInOperator.SQUARE.ordinal()].sum();
+	}
+
+	public long getSquareRoots() {
+		return operations[BuiltInOperator.SQRT.ordinal()].sum();
+	}
+
+	public long getEquals() {
+		return presses[CalculatorEngine.Key.EQUALS.ordinal()].sum();
+	}
+
+	public long getDeletes() {
+		return presses[CalculatorEngine.Key.DELETE.ordinal()].sum();
+	}
+
+	public long getClears() {
+		return presses[CalculatorEngine.Key.CLEAR.ordinal()].sum();
+	}
+
+	public long getKeyPresses() {
+		long total = 0;
+		for (LongAdder adder : presses) {
+			total += adder.sum();
+		}
+		return total;
+	}
+
+	public long getDivideByZeros() {
+		return divideByZeros.sum();
+	}
+
+	public long getNotANumbers() {
+		return notANumbers.sum();
+	}
+
+	public long getClipboardCopies() {
+		return clipboardCopies.sum();
+	}
+
+	public long getEvaluations() {
+		return getLatencies().getCount();
+	}
+
+	public long getEvaluationMeanNanos() {
+		return getLatencies().getMean();
+	}
+
+	public long getEvaluationP50Nanos() {
+		return getLatencies().getPercentile(0.5);
+	}
+
+	public long getEvaluationP99Nanos() {
+		return getLatencies().getPercentile(0.99);
+	}
+
+	public long getEvaluationP999Nanos() {
+		return getLatencies().getPercentile(0.999);
+	}
+
+	public long getEvaluationMaxNanos() {
+		return getLatencies().getMax();
+	}
+
+
+	// reset method
+	public void reset() {   // - Counts that happen while it's resetting may be kept or lost.
+		for (LongAdder counter : presses) {
+			counter.reset();
+		}
+		for (LongAdder counter : operations) {   // - One per operator, which isn't the same number as the keys.
+			counter.reset();
+		}
+		divideByZeros.reset();
+		notANumbers.reset();
+		clipboardCopies.reset();
+		for (LatencyHistogram stripe : latencies) {
+			synchronized (stripe) {
+				stripe.reset();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ * What CalculatorMetrics shows in JMX tools like JConsole and VisualVM. Times are in nanoseconds.
+ *
+ */
+
+public interface CalculatorMetricsMBean {
+
+	// operations
+	long getDivides();
+	long getMultiplies();
+	long getAdds();
+	long getSubtracts();
+	long getSquares();
+	long getSquareRoots();
+
+	// keys
+	long getEquals();
+	long getDeletes();
+	long getClears();
+	long getKeyPresses();
+
+	// results
+	long getDivideByZeros();
+	long getNotANumbers();
+	long getClipboardCopies();
+
+	// evaluation latency
+	long getEvaluations();
+	long getEvaluationMeanNanos();
+	long getEvaluationP50Nanos();
+	long getEvaluationP99Nanos();
+	long getEvaluationP999Nanos();
+	long getEvaluationMaxNanos();
+
+	void reset();
+
+}
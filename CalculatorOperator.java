@@ -0,0 +1,59 @@
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ *
+ * An operation the calculator can do, like divide or square root, or one that a plug-in adds, like pow, mod or sin.
+ *
+ * A binary operator goes between two numbers, like "2 ^ 10", and is calculated like the built-in four: on equals, on the
+ * next operator, or when something needs the answer. A unary operator is calculated on the first number or the answer
+ * right away, like square root.
+ *
+ * The double answer comes from getHandle(), a MethodHandle of type (double, double)double for a binary operator and
+ * (double)double for a unary one, like MethodHandles.lookup().findStatic(Math.class, "pow", ...). OperatorRegistry
+ * combines every operator's handle into one switch that the JIT inlines, so a plug-in's operation is as fast as a
+ * built-in one.
+ *
+ * decimal() and exact() must expect null numbers. second is always null for a unary operator, and first or second is
+ * null when it isn't a finite number, like the infinity after "1 / 0 =" or "Error". Return null or false for them, and
+ * the answer comes from the handle instead, which gets the doubles.
+ *
+ * Plug-ins are found with ServiceLoader: a jar or folder on the class path with the operator classes, and a file
+ * META-INF/services/CalculatorOperator that lists them, one class name per line. Each class needs a public constructor
+ * without parameters. The operators folder has examples.
+ *
+ */
+
+public interface CalculatorOperator {
+
+	// description
+	String getName();   // - Like "POW". Shown in traces. Built-in operators have the names of their keys, like "DIVIDE".
+
+	String getText();   // - Shown on the button, and between the numbers of a binary operator, like "mod".
+
+	default String getTypedChars() {   // - Characters that press this operator when they are typed on a keyboard, if they aren't a key's already.
+		return "";
+	}
+
+	boolean isUnary();
+
+
+	// calculation
+	MethodHandle getHandle();   // - (double, double)double, or (double)double if the operator is unary.
+
+	default BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {   // - In decimal mode. Null uses the double answer. See below for null numbers.
+		return null;
+	}
+
+	default boolean exact(Rational answer, Rational first, Rational second) {   // - In exact mode, puts the answer in answer. False uses the double answer. See below for null numbers.
+		return false;
+	}
+
+
+	// equation method
+	default DisplayText equation(DisplayText number) {   // - How a unary operator on number is written in the equation, like "sin(30)".
+		return DisplayText.of(getText()).append('(').append(number).append(')');
+	}
+
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * Makes the calculator available to other programs on the same computer, over HTTP on the loopback address.
+ *
+ *   POST /keys        Each line of the body is typed into the calculator like in batch mode, like "12+3*4".
+ *   POST /expression  Each line of the body is an expression with the usual order of operations, like "2 + 3 * 4".
+ *   POST /session?id= The body is typed into the calculator of that session, which keeps its numbers between requests.
+ *                     The answer is the main display and the label above it, on two lines. DELETE ends the session.
+ *
+ * The answer has one line for each line of the request, exactly like the output of batch mode. A single equation can
+ * also be sent with GET and ?q=, like "GET /keys?q=81r". "+" in a query means a space, so it has to be written as %2B.
+ *
+ * The equations are evaluated by BatchEvaluators, which are kept in a pool and reused, so a request doesn't create
+ * an engine. All expression requests share one ExpressionCache. Sessions are kept in a SessionRegistry, and the ones
+ * that haven't been used for a while are removed every minute. The keys and calculations of every session and /keys
+ * request are counted in CalculatorMetrics, which can be watched over JMX.
+ *
+ * Each request is handled on its own virtual thread when the Java version has them (21 and newer), so any number of
+ * clients can wait at once without a thread for each of them. On older versions, a fixed pool of threads is used instead.
+ * The requests only use the processor, so a few threads per processor are enough there too.
+ *
+ * Usage: java Calculator --server [--port n]
+ *
+ */
+
+public class CalculatorServer {
+
+	// fields
+	static final int DEFAULT_PORT = 8765;
+	private static final int BACKLOG = 4096;   // - Connections that can wait to be accepted, so a burst of clients isn't refused.
+	private static final int THREADS_PER_PROCESSOR = 4;   // - For Java versions without virtual threads.
+	private static final int CACHE_SIZE = 4096;
+	private static final int MAX_REQUEST_SIZE = 1 << 20;
+	private static final int MAX_SESSIONS = 500_000;
+	private static final long SESSION_IDLE_MILLIS = 30 * 60 * 1000;   // - Sessions are removed after half an hour without a request.
+	private static final long EVICTION_PERIOD_MILLIS = 60 * 1000;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final boolean virtualThreads;   // - True if each request has its own virtual thread.
+	private final ConcurrentLinkedQueue<BatchEvaluator> keyEvaluators = new ConcurrentLinkedQueue<BatchEvaluator>();   // - Evaluators that aren't being used right now.
+	private final ConcurrentLinkedQueue<BatchEvaluator> expressionEvaluators = new ConcurrentLinkedQueue<BatchEvaluator>();
+	private final ExpressionCache cache = new ExpressionCache(CACHE_SIZE);
+	private final SessionRegistry sessions = new SessionRegistry(MAX_SESSIONS, SESSION_IDLE_MILLIS);
+	private final CalculatorMetrics metrics = new CalculatorMetrics();
+	private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "session-eviction");
+		thread.setDaemon(true);   // - Doesn't keep the program running by itself.
+		return thread;
+	});
+
+
+	// constructor
+	public CalculatorServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+		ExecutorService virtualExecutor = newVirtualThreadExecutor();
+		virtualThreads = virtualExecutor != null;
+		executor = virtualThreads ? virtualExecutor : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * THREADS_PER_PROCESSOR);
+		server.setExecutor(executor);
+		server.createContext("/keys", exchange -> handle(exchange, false));
+		server.createContext("/expression", exchange -> handle(exchange, true));
+		server.createContext("/session", this::handleSession);
+	}
+
+
+	// new virtual thread executor method
+	private static ExecutorService newVirtualThreadExecutor() {   // - Returns null if this Java version doesn't have virtual threads.
+		try {   // - Looked up by name, so the server still compiles and runs on versions without them.
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+
+	// start and stop methods
+	public void start() {
+		sessions.setMetrics(metrics);
+		try {
+			metrics.register();
+		}
+		catch (JMException e) {   // - Like a second server in the same JVM. It still counts, it just isn't published.
+			System.out.println("Metrics aren't in JMX: " + e.getMessage());
+		}
+		server.start();
+		evictor.scheduleWithFixedDelay(sessions::evictIdle, EVICTION_PERIOD_MILLIS, EVICTION_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+		evictor.shutdown();
+	}
+
+
+	// handle method
+	private void handle(HttpExchange exchange, boolean expressions) throws IOException {
+		try (exchange) {
+			byte[] request = readRequest(exchange);
+			if (request == null) {
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+
+			ConcurrentLinkedQueue<BatchEvaluator> pool = expressions ? expressionEvaluators : keyEvaluators;
+			BatchEvaluator evaluator = pool.poll();
+			if (evaluator == null) {
+				evaluator = expressions ? new BatchEvaluator(cache) : new BatchEvaluator();
+				evaluator.setMetrics(metrics);
+			}
+			BatchEvaluator.BatchOutput output = new BatchEvaluator.BatchOutput(null, request.length * 2 + 64);
+			try {
+				evaluator.evaluateChunk(ByteBuffer.wrap(request), output);
+			}
+			catch (StackOverflowError e) {   // - A line too deep for the thread's stack. The compiler's depth limit should stop this first.
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+			pool.offer(evaluator);   // - Only after it finished. If it threw partway through a chunk, its engine's state can't be trusted, so it's dropped.
+
+			ByteBuffer answers = output.getBuffer();
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, answers.position());
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(answers.array(), 0, answers.position());
+			}
+		}
+	}
+
+
+	// handle session method
+	private void handleSession(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String query = exchange.getRequestURI().getQuery();
+			if (query == null || !query.startsWith("id=")) {
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+			String id = query.substring(3);
+			if (exchange.getRequestMethod().equals("DELETE")) {
+				exchange.sendResponseHeaders(sessions.remove(id) ? 204 : 404, -1);
+				return;
+			}
+
+			byte[] request;
+			try (InputStream body = exchange.getRequestBody()) {
+				request = body.readNBytes(MAX_REQUEST_SIZE);
+			}
+			int status = 200;
+			String display;
+			try {
+				display = sessions.get(id).type(new String(request, StandardCharsets.UTF_8)) + "\n";
+			}
+			catch (IllegalArgumentException e) {   // - A bad id or a char that isn't a key.
+				status = 400;
+				display = e.getMessage() + "\n";
+			}
+			catch (IllegalStateException e) {   // - No room for another session.
+				status = 503;
+				display = e.getMessage() + "\n";
+			}
+
+			byte[] response = display.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(status, response.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(response);
+			}
+		}
+	}
+
+
+	// read request method
+	private static byte[] readRequest(HttpExchange exchange) throws IOException {   // - The body of a POST, or q= of a GET. Null if there's neither or it's too big.
+		if (exchange.getRequestMethod().equals("GET")) {
+			String query = exchange.getRequestURI().getRawQuery();
+			if (query == null || !query.startsWith("q=")) {
+				return null;
+			}
+			return URLDecoder.decode(query.substring(2), StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+		}
+		try (InputStream body = exchange.getRequestBody()) {
+			byte[] request = body.readNBytes(MAX_REQUEST_SIZE + 1);
+			return request.length <= MAX_REQUEST_SIZE ? request : null;
+		}
+	}
+
+
+	// getters
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public boolean usesVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public SessionRegistry getSessions() {
+		return sessions;
+	}
+
+	public CalculatorMetrics getMetrics() {
+		return metrics;
+	}
+
+
+	// main method
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		if (args.length == 2 && args[0].equals("--port")) {
+			port = Integer.parseInt(args[1]);
+		}
+		else if (args.length != 0) {
+			System.err.println("Usage: java Calculator --server [--port n]");
+			return;
+		}
+		CalculatorServer calculatorServer = new CalculatorServer(port);
+		calculatorServer.start();
+		System.out.println("Calculator server on http://localhost:" + calculatorServer.getPort() + "/ using "
+				+ (calculatorServer.usesVirtualThreads() ? "virtual threads" : "a fixed thread pool"));
+	}
+
+}
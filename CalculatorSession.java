@@ -0,0 +1,102 @@
+/**
+ *
+ * One user's calculator in a SessionRegistry, with its own engine and its own numbers, operators and answer.
+ *
+ * A session can be used by more than one thread, but only one at a time: every method that touches the engine is
+ * synchronized on the session. Different sessions never wait for each other.
+ *
+ * To keep the memory of a session bounded, digits and operators are ignored once the display and the equation are
+ * longer than the limit, like a calculator that's out of room on its screen. Equals, square, square root, delete and
+ * clear still work, and they make room again, like the unary operators plug-ins add.
+ *
+ * Typed chars press keys, or the operators plug-ins add (OperatorRegistry.forChar), like "%" for the example mod.
+ *
+ */
+
+public class CalculatorSession {
+
+	// fields
+	private final String id;
+	private final CalculatorEngine engine = new CalculatorEngine();
+	private final int maxTextLength;   // - Longest the main text and the equation text can be together.
+	private volatile long lastUsed;   // - System.nanoTime() of the last time the session was used. Read by the registry to find idle sessions.
+
+
+	// constructor
+	CalculatorSession(String id, int maxTextLength, CalculatorMetrics metrics) {   // - metrics can be null.
+		this.id = id;
+		this.maxTextLength = maxTextLength;
+		engine.setMetrics(metrics);
+		touch();
+	}
+
+
+	// type method
+	public synchronized String type(CharSequence keys) {   // - Presses the key or operator for each typed char, and returns the main text and the previous text on two lines.
+		for (int i = 0; i < keys.length(); i++) {   // - Check every char first, so a bad one doesn't leave half of the keys pressed.
+			char c = keys.charAt(i);
+			if (!Character.isWhitespace(c) && !isSquareX(keys, i) && CalculatorEngine.Key.forChar(c) == null && OperatorRegistry.forChar(c) == null) {
+				throw new IllegalArgumentException("No key or operator for '" + c + "'");
+			}
+		}
+		for (int i = 0; i < keys.length(); i++) {
+			char c = keys.charAt(i);
+			if (Character.isWhitespace(c) || isSquareX(keys, i)) {
+				continue;
+			}
+			CalculatorEngine.Key key = CalculatorEngine.Key.forChar(c);
+			if (key != null) {
+				press(key);
+			}
+			else {
+				press(OperatorRegistry.forChar(c));
+			}
+		}
+		return engine.getMainText() + "\n" + engine.getPreviousText();
+	}
+
+	private static boolean isSquareX(CharSequence keys, int i) {   // - The x of x squared, like in batch mode.
+		return keys.charAt(i) == 'x' && i + 1 < keys.length() && keys.charAt(i + 1) == '\u00B2';
+	}
+
+
+	// press method
+	public synchronized void press(CalculatorEngine.Key key) {
+		touch();
+		if (key.isPrintable() && engine.getMainDisplay().length() + engine.getEquationDisplay().length() >= maxTextLength) {
+			return;   // - Out of room.
+		}
+		engine.press(key);
+	}
+
+	public synchronized void press(CalculatorOperator operator) {   // - A binary operator adds to the texts like a key, and a unary one makes room like square root.
+		touch();
+		if (!operator.isUnary() && engine.getMainDisplay().length() + engine.getEquationDisplay().length() >= maxTextLength) {
+			return;   // - Out of room.
+		}
+		engine.press(operator);
+	}
+
+
+	// getters
+	public String getId() {
+		return id;
+	}
+
+	public synchronized String getMainText() {
+		return engine.getMainText();
+	}
+
+	public synchronized String getPreviousText() {
+		return engine.getPreviousText();
+	}
+
+	long getLastUsed() {
+		return lastUsed;
+	}
+
+	void touch() {
+		lastUsed = System.nanoTime();
+	}
+
+}
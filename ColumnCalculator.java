@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * Does one of the calculator's operations on whole columns of numbers at once, like "column A * 1.2".
+ *
+ * The first numbers are a double[], and the second numbers are either another double[] of the same length or
+ * one number for the whole column. The answers are exactly what the calculator would calculate for each pair,
+ * with the same operations as CalculatorEngine's calculation(), and square and square root as well.
+ *
+ * The work is done by a ColumnKernel. When the Vector API classes are there (see VectorColumnKernel), each step
+ * works on several doubles at once with SIMD instructions. Otherwise a plain loop does one at a time.
+ *
+ * Columns that are too big for memory can be in files of doubles, which are memory-mapped and calculated in chunks.
+ *
+ */
+
+public class ColumnCalculator {
+
+	// fields
+	private static final String VECTOR_KERNEL = "VectorColumnKernel";   // - Loaded by name, because it's only compiled when the Vector API is available.
+	private static final int FILE_CHUNK = 1 << 16;   // - Doubles copied out of a mapped file at a time.
+	private static final long MAX_MAP_SIZE = 1L << 30;   // - Bytes of a file mapped at a time. A single mapping can't be over 2 GB.
+
+	private final ColumnKernel kernel;
+
+
+	// constructors
+	public ColumnCalculator() {   // - Uses the Vector API if it's available.
+		this(true);
+	}
+
+	public ColumnCalculator(boolean vectorize) {
+		ColumnKernel vectorKernel = vectorize ? loadVectorKernel() : null;
+		kernel = vectorKernel != null ? vectorKernel : new ScalarColumnKernel();
+	}
+
+
+	// load vector kernel method
+	private static ColumnKernel loadVectorKernel() {   // - Returns null if the class isn't compiled or the module wasn't added with --add-modules.
+		try {
+			return (ColumnKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+
+	// calculate methods
+	public void calculate(CalculatorEngine.Key key, double[] first, double[] second, double[] answers) {   // - answers[i] = first[i] (key) second[i].
+		checkOperation(key);
+		if (second.length != first.length || answers.length < first.length) {
+			throw new IllegalArgumentException("Columns have different lengths");
+		}
+		kernel.columns(key, first, second, answers, first.length);
+	}
+
+	public void calculate(CalculatorEngine.Key key, double[] first, double second, double[] answers) {   // - answers[i] = first[i] (key) second. second isn't used by SQUARE and SQRT.
+		checkOperation(key);
+		if (answers.length < first.length) {
+			throw new IllegalArgumentException("Columns have different lengths");
+		}
+		kernel.scalar(key, first, second, answers, first.length);
+	}
+
+
+	// calculate file method
+	public long calculate(CalculatorEngine.Key key, Path first, double second, Path answers) throws IOException {   // - Files of big-endian doubles, like DataOutputStream writes. Returns the number of answers.
+		checkOperation(key);
+		double[] firstChunk = new double[FILE_CHUNK];
+		double[] answerChunk = new double[FILE_CHUNK];
+
+		try (FileChannel in = FileChannel.open(first, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(answers, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size() - in.size() % Double.BYTES;   // - A partial double at the end is ignored.
+			for (long position = 0; position < size; position += MAX_MAP_SIZE) {
+				long mapSize = Math.min(MAX_MAP_SIZE, size - position);
+				DoubleBuffer firstBuffer = in.map(MapMode.READ_ONLY, position, mapSize).asDoubleBuffer();
+				DoubleBuffer answerBuffer = out.map(MapMode.READ_WRITE, position, mapSize).asDoubleBuffer();
+				while (firstBuffer.hasRemaining()) {
+					int length = Math.min(FILE_CHUNK, firstBuffer.remaining());
+					firstBuffer.get(firstChunk, 0, length);
+					kernel.scalar(key, firstChunk, second, answerChunk, length);
+					answerBuffer.put(answerChunk, 0, length);
+				}
+			}
+			return size / Double.BYTES;
+		}
+	}
+
+
+	// check operation method
+	private static void checkOperation(CalculatorEngine.Key key) {
+		if (!key.isOperator() && key != CalculatorEngine.Key.SQUARE && key != CalculatorEngine.Key.SQRT) {
+			throw new IllegalArgumentException(key + " isn't an operation");
+		}
+	}
+
+
+	// getters
+	public boolean isVectorized() {
+		return !(kernel instanceof ScalarColumnKernel);
+	}
+
+}
@@ -0,0 +1,18 @@
+/**
+ *
+ * Does one calculator operation on every element of a column of numbers.
+ *
+ * ColumnCalculator uses a VectorColumnKernel when the Vector API is available, and a ScalarColumnKernel otherwise.
+ * Both give exactly the same answers, because every operation is one IEEE operation that's correctly rounded either way.
+ *
+ */
+
+interface ColumnKernel {
+
+	// - answers[i] = first[i] (key) second[i], for i below length.
+	void columns(CalculatorEngine.Key key, double[] first, double[] second, double[] answers, int length);
+
+	// - answers[i] = first[i] (key) second. For SQUARE and SQRT, second isn't used.
+	void scalar(CalculatorEngine.Key key, double[] first, double second, double[] answers, int length);
+
+}
@@ -0,0 +1,120 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ *
+ * Arithmetic on BigDecimals for the calculator's decimal mode.
+ *
+ * Every method takes null for a number that isn't finite, like the answer after dividing by zero, and returns null
+ * when the answer isn't finite either. The engine then falls back to the double answer, which shows "Error" or infinity.
+ *
+ * The square root uses Newton's method. It starts from Math.sqrt, which is right to about 16 digits, and each step
+ * doubles the number of correct digits, so each step is done with twice the precision of the one before.
+ * Only the last step is done at the full precision, so a square root costs about as much as two divisions.
+ * Rounding the last step could still land on the wrong side of a halfway point, so the answer is then checked
+ * against the exact squares of its neighbours, and rounded from a number that's on the right side.
+ *
+ */
+
+public class DecimalMath {
+
+	// fields
+	private static final BigDecimal TWO = BigDecimal.valueOf(2);
+	private static final int SEED_DIGITS = 15;   // - Math.sqrt is right to at least this many digits.
+	private static final int GUARD_DIGITS = 5;   // - Extra digits for the last step, so Newton's answer is off by much less than the last digit of the answer.
+	private static final int MAX_PLAIN_EXPONENT = 21;   // - Bigger numbers are shown like "1.5E+30" instead of with all their zeros.
+	private static final int MIN_PLAIN_EXPONENT = -7;
+
+
+	// constructor
+	private DecimalMath() {
+	}
+
+
+	// operator methods
+	public static BigDecimal add(BigDecimal a, BigDecimal b, MathContext mc) {
+		return a == null || b == null ? null : a.add(b, mc);
+	}
+
+	public static BigDecimal subtract(BigDecimal a, BigDecimal b, MathContext mc) {
+		return a == null || b == null ? null : a.subtract(b, mc);
+	}
+
+	public static BigDecimal multiply(BigDecimal a, BigDecimal b, MathContext mc) {
+		return a == null || b == null ? null : a.multiply(b, mc);
+	}
+
+	public static BigDecimal divide(BigDecimal a, BigDecimal b, MathContext mc) {
+		if (a == null || b == null || b.signum() == 0) {   // - Dividing by zero is infinity, or Error for 0 / 0.
+			return null;
+		}
+		return a.divide(b, mc);
+	}
+
+	public static BigDecimal square(BigDecimal a, MathContext mc) {
+		return a == null ? null : a.multiply(a, mc);
+	}
+
+
+	// square root method
+	public static BigDecimal sqrt(BigDecimal a, MathContext mc) {
+		if (a == null || a.signum() < 0) {   // - The square root of a negative number is Error.
+			return null;
+		}
+		if (a.signum() == 0) {
+			return BigDecimal.ZERO;
+		}
+
+		int exponent = a.precision() - a.scale() - 1;   // - a is about 10^exponent.
+		int shift = exponent - Math.floorMod(exponent, 2);   // - Take out an even power of ten, so the square root of it is exact.
+		BigDecimal scaled = a.movePointLeft(shift);   // - Now between 1 and 100, well inside the range of a double.
+
+		BigDecimal root = new BigDecimal(Math.sqrt(scaled.doubleValue()));
+		int target = mc.getPrecision() + GUARD_DIGITS;
+		int precision = SEED_DIGITS;
+		while (precision < target) {
+			precision = Math.min(precision * 2, target);
+			MathContext step = new MathContext(precision, RoundingMode.HALF_EVEN);
+			root = root.add(scaled.divide(root, step), step).divide(TWO, step);   // - root = (root + scaled / root) / 2
+		}
+		return roundRoot(scaled, root, mc).movePointRight(shift / 2).round(mc);
+	}
+
+	private static BigDecimal roundRoot(BigDecimal scaled, BigDecimal root, MathContext mc) {   // - Returns a number that mc rounds the same way as the exact square root of scaled.
+		int scale = mc.getPrecision() - 1;   // - The root is between 1 and 10, so this is mc's last digit.
+		BigDecimal ulp = BigDecimal.ONE.movePointLeft(scale);
+		BigDecimal low = root.setScale(scale, RoundingMode.DOWN);
+		while (low.multiply(low).compareTo(scaled) > 0) {   // - Make low the biggest number with mc's digits whose square isn't more than scaled.
+			low = low.subtract(ulp);
+		}
+		while (low.add(ulp).multiply(low.add(ulp)).compareTo(scaled) <= 0) {
+			low = low.add(ulp);
+		}
+		if (low.multiply(low).compareTo(scaled) == 0) {   // - The root is exact.
+			return low;
+		}
+		BigDecimal half = low.add(ulp.divide(TWO));   // - Halfway between low and the next number up.
+		int side = half.multiply(half).compareTo(scaled);
+		if (side == 0) {   // - The root is exactly halfway, so mc's rounding mode breaks the tie.
+			return half;
+		}
+		BigDecimal quarter = ulp.divide(BigDecimal.valueOf(4));   // - Not low, half or the next number, so it rounds like the root does in every rounding mode.
+		return side > 0 ? low.add(quarter) : half.add(quarter);
+	}
+
+
+	// format method
+	public static String format(BigDecimal value) {   // - Like the double answers, there are no trailing zeros and whole numbers have no decimal point.
+		if (value.signum() == 0) {
+			return "0";
+		}
+		BigDecimal stripped = value.stripTrailingZeros();
+		int exponent = stripped.precision() - stripped.scale() - 1;
+		if (exponent >= MIN_PLAIN_EXPONENT && exponent < MAX_PLAIN_EXPONENT) {
+			return stripped.toPlainString();
+		}
+		return stripped.toString();
+	}
+
+}
@@ -0,0 +1,234 @@
+import java.util.Arrays;
+
+/**
+ *
+ * The text of a display, made for texts that only grow and shrink at the end, like a number or an equation being typed.
+ *
+ * A DisplayText never changes. append() and withoutLast() return a new text that shares almost everything with the
+ * old one, so both can be kept, like in an undo snapshot. The chars are in blocks of 32 that are never copied again
+ * once they're full, in a tree where every node has 32 children (the same shape as Clojure's persistent vector).
+ * The last block is kept outside the tree, so most appends and deletes only copy that one block.
+ *
+ * Adding or removing a char takes the same time whether the text has ten chars or a million, and charAt() only goes
+ * down a few levels of the tree, so the end of a long text can be painted without looking at the rest of it.
+ * toString() makes the whole text once and remembers it.
+ *
+ */
+
+public final class DisplayText implements CharSequence {
+
+	// fields
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;   // - Chars in a block, and children of a node.
+	private static final int MASK = WIDTH - 1;
+	private static final Object[] EMPTY_NODE = new Object[WIDTH];
+	private static final char[] EMPTY_TAIL = new char[0];
+
+	public static final DisplayText EMPTY = new DisplayText(0, BITS, EMPTY_NODE, EMPTY_TAIL);
+
+	private final int length;
+	private final int shift;   // - How far an index is shifted to find its child in the root. BITS more for every level below it.
+	private final Object[] root;   // - Nodes are Object[WIDTH]. The nodes on the lowest level hold the full blocks, as char[WIDTH].
+	private final char[] tail;   // - The last block, with 1 to WIDTH chars. Empty only when the text is.
+	private String string;   // - Made by toString(). Null until then.
+
+
+	// constructors
+	private DisplayText(int length, int shift, Object[] root, char[] tail) {
+		this.length = length;
+		this.shift = shift;
+		this.root = root;
+		this.tail = tail;
+	}
+
+	public static DisplayText of(CharSequence text) {
+		return EMPTY.append(text);
+	}
+
+
+	// char sequence methods
+	public int length() {
+		return length;
+	}
+
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+		}
+		return blockFor(index)[index & MASK];
+	}
+
+	public char lastChar() {
+		return tail[tail.length - 1];
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		char[] chars = new char[end - start];
+		getChars(start, end, chars, 0);
+		return new String(chars);
+	}
+
+	public void getChars(int start, int end, char[] destination, int destinationStart) {   // - Copies a block at a time, like String.getChars.
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("From " + start + " to " + end + ", length " + length);
+		}
+		while (start < end) {
+			char[] block = blockFor(start);
+			int count = Math.min(end - start, WIDTH - (start & MASK));
+			System.arraycopy(block, start & MASK, destination, destinationStart, count);
+			destinationStart += count;
+			start += count;
+		}
+	}
+
+	public boolean contentEquals(CharSequence text) {   // - Only looks at the chars when the lengths are the same.
+		if (text.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (charAt(i) != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public String toString() {
+		if (string == null) {
+			char[] chars = new char[length];
+			getChars(0, length, chars, 0);
+			string = new String(chars);
+		}
+		return string;
+	}
+
+
+	// block method
+	private int tailOffset() {   // - Index of the first char of the tail.
+		return length == 0 ? 0 : ((length - 1) >>> BITS) << BITS;
+	}
+
+	private char[] blockFor(int index) {
+		if (index >= tailOffset()) {
+			return tail;
+		}
+		Object node = root;
+		for (int level = shift; level > 0; level -= BITS) {
+			node = ((Object[]) node)[(index >>> level) & MASK];
+		}
+		return (char[]) node;
+	}
+
+
+	// append methods
+	public DisplayText append(char c) {
+		if (length - tailOffset() < WIDTH) {   // - There's room in the tail.
+			char[] newTail = Arrays.copyOf(tail, tail.length + 1);
+			newTail[tail.length] = c;
+			return new DisplayText(length + 1, shift, root, newTail);
+		}
+		Object[] newRoot;   // - The tail is full, so it goes into the tree and c starts a new one.
+		int newShift = shift;
+		if ((length >>> BITS) > (1 << shift)) {   // - The tree is full, so it gets a new root one level higher.
+			newRoot = new Object[WIDTH];
+			newRoot[0] = root;
+			newRoot[1] = newPath(shift, tail);
+			newShift += BITS;
+		}
+		else {
+			newRoot = pushTail(shift, root, tail);
+		}
+		return new DisplayText(length + 1, newShift, newRoot, new char[] {c});
+	}
+
+	public DisplayText append(CharSequence text) {   // - Fills the tail a block at a time instead of copying it for every char.
+		DisplayText result = this;
+		int i = 0;
+		while (i < text.length()) {
+			int tailLength = result.length - result.tailOffset();
+			if (tailLength == WIDTH) {
+				result = result.append(text.charAt(i++));
+				continue;
+			}
+			int count = Math.min(WIDTH - tailLength, text.length() - i);
+			char[] newTail = Arrays.copyOf(result.tail, tailLength + count);
+			for (int j = 0; j < count; j++) {
+				newTail[tailLength + j] = text.charAt(i + j);
+			}
+			result = new DisplayText(result.length + count, result.shift, result.root, newTail);
+			i += count;
+		}
+		return result;
+	}
+
+	private Object[] pushTail(int level, Object[] parent, char[] block) {   // - Copies the path down to where the full tail goes.
+		int child = ((length - 1) >>> level) & MASK;
+		Object[] result = parent.clone();
+		if (level == BITS) {
+			result[child] = block;
+		}
+		else {
+			Object[] node = (Object[]) parent[child];
+			result[child] = node != null ? pushTail(level - BITS, node, block) : newPath(level - BITS, block);
+		}
+		return result;
+	}
+
+	private static Object newPath(int level, char[] block) {   // - A branch of single children down to the block.
+		if (level == 0) {
+			return block;
+		}
+		Object[] node = new Object[WIDTH];
+		node[0] = newPath(level - BITS, block);
+		return node;
+	}
+
+
+	// without last method
+	public DisplayText withoutLast() {   // - The text without its last char, like a delete.
+		if (length == 0) {
+			throw new IllegalStateException("Empty text");
+		}
+		if (length == 1) {
+			return EMPTY;
+		}
+		if (length - tailOffset() > 1) {
+			return new DisplayText(length - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+		}
+		char[] newTail = blockFor(length - 2);   // - The tail is empty now, so the last block of the tree becomes the tail.
+		Object[] newRoot = popTail(shift, root);
+		int newShift = shift;
+		if (newRoot == null) {
+			newRoot = EMPTY_NODE;
+		}
+		if (shift > BITS && newRoot[1] == null) {   // - The root only has one child left, so the tree gets one level lower.
+			newRoot = (Object[]) newRoot[0];
+			newShift -= BITS;
+		}
+		return new DisplayText(length - 1, newShift, newRoot, newTail);
+	}
+
+	private Object[] popTail(int level, Object[] node) {   // - Copies the path down to the last block, without it. Null if nothing is left.
+		int child = ((length - 2) >>> level) & MASK;
+		if (level > BITS) {
+			Object[] newChild = popTail(level - BITS, (Object[]) node[child]);
+			if (newChild == null && child == 0) {
+				return null;
+			}
+			Object[] result = node.clone();
+			result[child] = newChild;
+			return result;
+		}
+		if (child == 0) {
+			return null;
+		}
+		Object[] result = node.clone();
+		result[child] = null;
+		return result;
+	}
+
+}
@@ -0,0 +1,113 @@
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.util.Map;
+
+import javax.swing.JComponent;
+
+/**
+ *
+ * Shows the end of a DisplayText on one line, right aligned, like a calculator's display.
+ *
+ * A JLabel measures and lays out its whole text every time it changes, so a display with a hundred thousand digits
+ * gets slower with every key. This only measures the chars that fit, starting from the last one, and paints those.
+ * Its preferred size depends on the font and not on the text, so a new text only repaints it and never lays out the window again.
+ * When the text doesn't fit, an ellipsis at the left shows that there's more.
+ *
+ */
+
+@SuppressWarnings("serial")
+public class DisplayView extends JComponent {
+
+	// fields
+	private static final String ELLIPSIS = "\u2026";
+
+	private DisplayText text = DisplayText.EMPTY;
+	private char[] visible = new char[64];   // - The chars that are painted. Reused, and grown when the display gets wider.
+
+
+	// constructor
+	public DisplayView(String text) {
+		this.text = DisplayText.of(text);
+	}
+
+
+	// text methods
+	public void setText(DisplayText text) {
+		if (text != this.text) {   // - Texts never change, so the same one doesn't need painting again.
+			this.text = text;
+			repaint();
+		}
+	}
+
+	public DisplayText getText() {
+		return text;
+	}
+
+
+	// size method
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet()) {
+			return super.getPreferredSize();
+		}
+		Insets insets = getInsets();
+		FontMetrics metrics = getFontMetrics(getFont());
+		return new Dimension(insets.left + insets.right + metrics.charWidth('0'), insets.top + insets.bottom + metrics.getHeight());
+	}
+
+
+	// paint method
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		Graphics2D g2 = (Graphics2D) g;
+		Map<?, ?> hints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");   // - Anti-aliasing like the JLabels in the rest of the window.
+		if (hints != null) {
+			g2.addRenderingHints(hints);
+		}
+		else {
+			g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		}
+		g2.setFont(getFont());
+		g2.setColor(getForeground());
+		FontMetrics metrics = g2.getFontMetrics();
+		Insets insets = getInsets();
+		int width = getWidth() - insets.left - insets.right;
+
+		int textWidth = 0;   // - Measure from the last char back, until the next one wouldn't fit.
+		int start = text.length();
+		while (start > 0) {
+			int charWidth = metrics.charWidth(text.charAt(start - 1));
+			if (textWidth + charWidth > width) {
+				break;
+			}
+			textWidth += charWidth;
+			start--;
+		}
+		if (start > 0) {   // - Make room for the ellipsis.
+			int ellipsisWidth = metrics.stringWidth(ELLIPSIS);
+			while (start < text.length() && textWidth + ellipsisWidth > width) {
+				textWidth -= metrics.charWidth(text.charAt(start));
+				start++;
+			}
+			textWidth += ellipsisWidth;
+		}
+
+		int count = text.length() - start;
+		if (visible.length < count) {
+			visible = new char[count * 2];
+		}
+		text.getChars(start, text.length(), visible, 0);
+		int x = insets.left + width - textWidth;
+		int y = insets.top + (getHeight() - insets.top - insets.bottom - metrics.getHeight()) / 2 + metrics.getAscent();   // - Centered, like a JLabel.
+		if (start > 0) {
+			g2.drawString(ELLIPSIS, x, y);
+			x += metrics.stringWidth(ELLIPSIS);
+		}
+		g2.drawChars(visible, 0, count, x, y);
+	}
+
+}
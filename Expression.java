@@ -0,0 +1,128 @@
+/**
+ *
+ * A compiled expression, ready to be evaluated.
+ *
+ * ExpressionCompiler turns text like "2 + 3 * 4" into a flat list of instructions in postfix order,
+ * "push 2, push 3, push 4, multiply, add", and the numbers into an array of constants.
+ * Evaluating it is one loop over the instructions with a small stack of doubles, so there's no tree to walk
+ * and nothing is created except the stack.
+ *
+ * An expression can use variables, like "price * 1.2". The expression only has the names, in the order they're first
+ * used, and a LOAD instruction for each use. Whoever evaluates it gives the values, with slots that say where each
+ * name's value is (Sheet keeps all of its values in one array), so the same expression works with any values.
+ *
+ * Expressions can't be changed after they are compiled, so one expression can be evaluated by many threads at once.
+ *
+ */
+
+public class Expression {
+
+	// instructions
+	static final int PUSH = 0;   // - Push constants[operand].
+	static final int ADD = 1;
+	static final int SUBTRACT = 2;
+	static final int MULTIPLY = 3;
+	static final int DIVIDE = 4;
+	static final int NEGATE = 5;
+	static final int SQUARE = 6;
+	static final int SQRT = 7;
+	static final int LOAD = 8;   // - Push values[slots[operand]], the value of variables[operand].
+
+	static final int OPERAND_SHIFT = 8;   // - Each instruction is the opcode in the low 8 bits and its operand above them.
+
+
+	// fields
+	private final String source;   // - The text the expression was compiled from.
+	private final int[] code;
+	private final double[] constants;
+	private final String[] variables;   // - Names of the variables, in the order they're first used.
+	private final int maxStack;   // - Deepest the stack gets while evaluating.
+
+
+	// constructor
+	Expression(String source, int[] code, double[] constants, String[] variables, int maxStack) {
+		this.source = source;
+		this.code = code;
+		this.constants = constants;
+		this.variables = variables;
+		this.maxStack = maxStack;
+	}
+
+
+	// evaluate methods
+	public double evaluate() {
+		return evaluate(new double[maxStack]);
+	}
+
+	public double evaluate(double[] stack) {   // - stack must have room for getMaxStack() values. It can be reused between calls.
+		if (variables.length > 0) {
+			throw new IllegalStateException("\"" + source + "\" needs values for its variables");
+		}
+		return evaluate(stack, null, null);
+	}
+
+	public double evaluate(double[] stack, double[] values, int[] slots) {   // - The value of getVariable(i) is values[slots[i]].
+		int top = -1;
+		for (int instruction : code) {
+			switch (instruction & 0xFF) {
+			case PUSH:
+				stack[++top] = constants[instruction >>> OPERAND_SHIFT];
+				break;
+			case ADD:
+				top--;
+				stack[top] = stack[top] + stack[top + 1];
+				break;
+			case SUBTRACT:
+				top--;
+				stack[top] = stack[top] - stack[top + 1];
+				break;
+			case MULTIPLY:
+				top--;
+				stack[top] = stack[top] * stack[top + 1];
+				break;
+			case DIVIDE:
+				top--;
+				stack[top] = stack[top] / stack[top + 1];
+				break;
+			case NEGATE:
+				stack[top] = -stack[top];
+				break;
+			case SQUARE:
+				stack[top] = Math.pow(stack[top], 2);   // - Same as the calculator's square button.
+				break;
+			case SQRT:
+				stack[top] = Math.sqrt(stack[top]);
+				break;
+			case LOAD:
+				stack[++top] = values[slots[instruction >>> OPERAND_SHIFT]];
+				break;
+			default:
+				throw new IllegalStateException("Unknown instruction " + (instruction & 0xFF));
+			}
+		}
+		return stack[0];
+	}
+
+
+	// getters
+	public String getSource() {
+		return source;
+	}
+
+	public int getMaxStack() {
+		return maxStack;
+	}
+
+	public int getVariableCount() {
+		return variables.length;
+	}
+
+	public String getVariable(int index) {
+		return variables[index];
+	}
+
+	public String toString() {
+		return source;
+	}
+
+}
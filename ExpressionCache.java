@@ -0,0 +1,69 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * Remembers the most recently used compiled expressions, so a formula that comes up again isn't parsed again.
+ *
+ * Expressions are looked up by their text. When the cache is full, the expression that was used least recently
+ * is dropped. The number of hits (found in the cache) and misses (had to be compiled) are counted.
+ *
+ * All methods are synchronized so one cache can be shared by threads. Compiling happens inside the lock,
+ * which is fine because each thread would otherwise have compiled the same text anyway.
+ *
+ */
+
+public class ExpressionCache {
+
+	// fields
+	private final LinkedHashMap<String, Expression> expressions;   // - In order of last use, least recent first.
+	private final ExpressionCompiler compiler = new ExpressionCompiler();
+	private long hits;
+	private long misses;
+
+
+	// constructor
+	@SuppressWarnings("serial")
+	public ExpressionCache(int capacity) {
+		expressions = new LinkedHashMap<String, Expression>(16, 0.75f, true) {   // - True means the order is by access instead of by insertion.
+			protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+
+	// get method
+	public synchronized Expression get(String source) {   // - Throws IllegalArgumentException if the text isn't a valid expression.
+		Expression expression = expressions.get(source);
+		if (expression != null) {
+			hits++;
+			return expression;
+		}
+		misses++;
+		expression = compiler.compile(source);
+		expressions.put(source, expression);
+		return expression;
+	}
+
+
+	// getters
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized int size() {
+		return expressions.size();
+	}
+
+	public synchronized void clear() {
+		expressions.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+}
@@ -0,0 +1,290 @@
+import java.util.Arrays;
+
+/**
+ *
+ * Compiles text into an Expression, with the usual order of operations.
+ *
+ * Unlike the buttons, which calculate left to right, "2 + 3 * 4" is 14 here because multiply and divide come before
+ * add and subtract. Parentheses group, "-" in front of a number negates it, the square sign after a number squares it,
+ * and the square root sign in front of a number takes its square root. sqr(x) and sqrt(x) can be written as functions too.
+ * A name, like "price" or "tax_2", is a variable, which gets its value when the expression is evaluated.
+ * The calculator's own signs for multiply, divide and subtract work as well as "*", "/" and "-".
+ *
+ * The grammar, from lowest to highest precedence:
+ *   expression = term (("+" | "-") term)*
+ *   term       = unary (("*" | "/") unary)*
+ *   unary      = ("-" | square root sign) unary | postfix
+ *   postfix    = primary (square sign)*
+ *   primary    = number | name | "(" expression ")" | ("sqr" | "sqrt") "(" expression ")"
+ *   name       = letter (letter | digit | "_")*
+ *
+ * The compiler is a recursive descent parser that writes the instructions as it goes, in postfix order.
+ * Nesting more than MAX_DEPTH parentheses, signs and functions inside each other is an error, so the recursion can't overflow the stack.
+ * A compiler isn't thread-safe, but it can be reused for any number of expressions.
+ *
+ */
+
+public class ExpressionCompiler {
+
+	// fields
+	private String source;   // - The text being compiled.
+	private int position;   // - Index of the next char to read.
+
+	private int[] code = new int[16];   // - Instructions written so far. Copied to the right size at the end.
+	private int codeLength;
+	private double[] constants = new double[8];
+	private int constantCount;
+	private String[] variables = new String[4];
+	private int variableCount;
+	private int stack;   // - How deep the stack will be at this point when the expression is evaluated.
+	private int maxStack;
+	private int depth;   // - How many unary() calls are open. Every parenthesis, minus sign and function goes through one.
+
+	private final NumberAccumulator number = new NumberAccumulator();   // - Reads numbers without making a String of each one.
+
+	private static final int MAX_DEPTH = 1000;   // - Deeper than any real expression, and far less than it takes to overflow the stack.
+
+
+	// compile method
+	public Expression compile(String source) {   // - Throws IllegalArgumentException if the text isn't a valid expression.
+		this.source = source;
+		position = 0;
+		codeLength = 0;
+		constantCount = 0;
+		variableCount = 0;
+		stack = 0;
+		maxStack = 0;
+		depth = 0;
+
+		expression();
+		skipSpaces();
+		if (position < source.length()) {
+			throw error("Unexpected '" + source.charAt(position) + "'");
+		}
+		Expression expression = new Expression(source, Arrays.copyOf(code, codeLength), Arrays.copyOf(constants, constantCount), Arrays.copyOf(variables, variableCount), maxStack);
+		Arrays.fill(variables, 0, variableCount, null);   // - So the compiler doesn't keep the names alive.
+		return expression;
+	}
+
+
+	// grammar methods
+	private void expression() {
+		term();
+		while (true) {
+			if (accept('+')) {
+				term();
+				emit(Expression.ADD, -1);
+			}
+			else if (accept('-') || accept('\u2212')) {
+				term();
+				emit(Expression.SUBTRACT, -1);
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	private void term() {
+		unary();
+		while (true) {
+			if (accept('*') || accept('\u00D7')) {
+				unary();
+				emit(Expression.MULTIPLY, -1);
+			}
+			else if (accept('/') || accept('\u00F7')) {
+				unary();
+				emit(Expression.DIVIDE, -1);
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	private void unary() {
+		if (++depth > MAX_DEPTH) {   // - Otherwise thousands of "(" or "-" in a row would throw StackOverflowError instead of a normal error.
+			throw error("Too deeply nested");
+		}
+		if (accept('-') || accept('\u2212')) {
+			unary();
+			emit(Expression.NEGATE, 0);
+		}
+		else if (accept('\u221A')) {
+			unary();
+			emit(Expression.SQRT, 0);
+		}
+		else {
+			postfix();
+		}
+		depth--;
+	}
+
+	private void postfix() {
+		primary();
+		while (accept('\u00B2')) {
+			emit(Expression.SQUARE, 0);
+		}
+	}
+
+	private void primary() {
+		skipSpaces();
+		if (accept('(')) {
+			expression();
+			expect(')');
+		}
+		else if (acceptWord("sqrt")) {
+			function(Expression.SQRT);
+		}
+		else if (acceptWord("sqr")) {
+			function(Expression.SQUARE);
+		}
+		else if (position < source.length() && (isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+			number();
+		}
+		else if (position < source.length() && isLetter(source.charAt(position))) {
+			variable();
+		}
+		else {
+			throw error(position < source.length() ? "Unexpected '" + source.charAt(position) + "'" : "Missing number");
+		}
+	}
+
+	private void function(int opcode) {
+		expect('(');
+		expression();
+		expect(')');
+		emit(opcode, 0);
+	}
+
+	private void number() {
+		int start = position;
+		number.clear();
+		boolean decimal = false;
+		while (position < source.length()) {
+			char c = source.charAt(position);
+			if (c == '.' && !decimal) {
+				decimal = true;
+			}
+			else if (!isDigit(c)) {
+				break;
+			}
+			number.append(c);
+			position++;
+		}
+		if (!number.hasDigits()) {
+			throw error("Missing digits");
+		}
+		pushConstant(number.doubleValue(source.subSequence(start, position)));
+	}
+
+
+	private void variable() {
+		int start = position;
+		while (position < source.length() && isNameChar(source.charAt(position))) {
+			position++;
+		}
+		String name = source.substring(start, position);
+		int index = 0;
+		while (index < variableCount && !variables[index].equals(name)) {   // - Expressions only use a few names, so a search is quicker than a map.
+			index++;
+		}
+		if (index == variableCount) {
+			if (variableCount == variables.length) {
+				variables = Arrays.copyOf(variables, variableCount * 2);
+			}
+			variables[variableCount++] = name;
+		}
+		emitInstruction(Expression.LOAD | index << Expression.OPERAND_SHIFT);
+		stack++;
+		maxStack = Math.max(maxStack, stack);
+	}
+
+
+	// emit methods
+	private void pushConstant(double value) {
+		if (constantCount == constants.length) {
+			constants = Arrays.copyOf(constants, constantCount * 2);
+		}
+		constants[constantCount] = value;
+		emitInstruction(Expression.PUSH | constantCount << Expression.OPERAND_SHIFT);
+		constantCount++;
+		stack++;
+		maxStack = Math.max(maxStack, stack);
+	}
+
+	private void emit(int opcode, int stackChange) {   // - Binary operators take two values and leave one, so they change the stack by -1.
+		emitInstruction(opcode);
+		stack += stackChange;
+	}
+
+	private void emitInstruction(int instruction) {
+		if (codeLength == code.length) {
+			code = Arrays.copyOf(code, codeLength * 2);
+		}
+		code[codeLength++] = instruction;
+	}
+
+
+	// reading methods
+	private void skipSpaces() {
+		while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+			position++;
+		}
+	}
+
+	private boolean accept(char c) {
+		skipSpaces();
+		if (position < source.length() && source.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean acceptWord(String word) {
+		if (source.startsWith(word, position)) {
+			int end = position + word.length();
+			if (end == source.length() || !isNameChar(source.charAt(end))) {   // - So "sqr" doesn't match the start of "sqrt", or of a name like "sqr2".
+				position = end;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void expect(char c) {
+		if (!accept(c)) {
+			throw error("Expected '" + c + "'");
+		}
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	static boolean isNameChar(char c) {
+		return isLetter(c) || isDigit(c) || c == '_';
+	}
+
+	static boolean isName(String text) {   // - True if text can be a variable's name. The function names can't.
+		if (text.isEmpty() || !isLetter(text.charAt(0)) || text.equals("sqr") || text.equals("sqrt")) {
+			return false;
+		}
+		for (int i = 1; i < text.length(); i++) {
+			if (!isNameChar(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + position + " in \"" + source + "\"");
+	}
+
+}
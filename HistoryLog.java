@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * A tape of every equation the calculator has finished, kept in a file so it's still there after a restart.
+ *
+ * The file is a header followed by records that all have the same size, so record i is always at the same place
+ * and can be read without reading the ones before it. The file is memory-mapped, so adding a record is only writing
+ * into memory. There's no system call for each record, and the operating system writes the pages to the file on its own.
+ * A new part of the file is only mapped when the one being written is full.
+ *
+ * Reading works the same way. Only the parts of the file that are looked at are mapped, and only the pages that
+ * are touched are loaded, so a list that shows a few rows of millions of records only loads those rows.
+ *
+ * Each record has the time, the answer as a double, the equation, and the answer as text. Texts that are too long
+ * for their space in the record are cut off, but their full length is kept so isTruncated() can tell.
+ *
+ * The methods are synchronized so the log can be shared between windows or threads. Only one program can have the file
+ * open at a time: the count of records is kept in memory while it's open, so two calculators writing to the same file
+ * would write over each other's records. The constructor takes an exclusive FileLock, and throws an IOException if
+ * another calculator has the file, so the second one runs without history. A file that's already open in this program
+ * is refused before it's opened again, because closing any channel of a file can release this program's lock on it.
+ *
+ * If the calculator crashes or is killed, the records it added are still in the file, because the operating system
+ * has the mapped pages and writes them out on its own. If the operating system itself crashes or the power goes off,
+ * the records since the file was last forced to the disk, by close(), can be lost, and the count in the header can be
+ * off from the records that made it to the disk.
+ *
+ */
+
+public class HistoryLog implements AutoCloseable {
+
+	// fields
+	private static final long MAGIC = 0x43414C4348495354L;   // - "CALCHIST", so other files aren't read as history by mistake.
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4096;   // - One page, so the records start on a page boundary.
+	private static final int COUNT_OFFSET = 12;   // - Header is magic (8 bytes), version (4), record count (8).
+
+	static final int RECORD_SIZE = 256;
+	private static final int TIME_OFFSET = 0;   // - Record is time (8 bytes), double answer (8), equation length (2), answer length (2), then the texts.
+	private static final int DOUBLE_OFFSET = 8;
+	private static final int EQUATION_LENGTH_OFFSET = 16;
+	private static final int ANSWER_LENGTH_OFFSET = 18;
+	private static final int EQUATION_OFFSET = 20;
+	private static final int EQUATION_CHARS = 84;
+	private static final int ANSWER_OFFSET = EQUATION_OFFSET + EQUATION_CHARS * 2;
+	private static final int ANSWER_CHARS = (RECORD_SIZE - ANSWER_OFFSET) / 2;
+
+	private static final Set<Path> OPEN_PATHS = ConcurrentHashMap.newKeySet();   // - Files open in this program, which FileLock can't tell apart.
+
+	private static final int SEGMENT_RECORDS = 1 << 16;   // - Records in each mapped part of the file, 16 MB.
+	private static final long SEGMENT_SIZE = (long) SEGMENT_RECORDS * RECORD_SIZE;
+
+	private final Path openPath;   // - This file in OPEN_PATHS.
+	private final FileChannel channel;
+	private final FileLock lock;   // - Held until close(), so no other program writes to the file.
+	private final MappedByteBuffer header;
+	private MappedByteBuffer[] segments = new MappedByteBuffer[16];   // - Mapped the first time a record in them is read or written.
+	private long count;   // - Number of records.
+
+
+	// constructor
+	public HistoryLog(Path path) throws IOException {   // - Opens the log, or creates it if the file doesn't exist yet.
+		openPath = Files.exists(path) ? path.toRealPath() : path.toAbsolutePath().normalize();
+		if (!OPEN_PATHS.add(openPath)) {
+			throw new IOException(path + " is being used by another calculator");
+		}
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		catch (IOException e) {
+			OPEN_PATHS.remove(openPath);
+			throw e;
+		}
+		try {
+			lock = tryLock(channel, path);
+			boolean isNew = channel.size() == 0;
+			if (!isNew && channel.size() < HEADER_SIZE) {   // - Checked before mapping, because mapping would make the file bigger.
+				throw new IOException(path + " isn't a calculator history file");
+			}
+			header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+			if (isNew) {
+				header.putLong(0, MAGIC);
+				header.putInt(8, VERSION);
+				header.putLong(COUNT_OFFSET, 0);
+			}
+			else if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+				throw new IOException(path + " isn't a calculator history file");
+			}
+			count = header.getLong(COUNT_OFFSET);
+		}
+		catch (IOException e) {
+			channel.close();   // - Releases the lock too.
+			OPEN_PATHS.remove(openPath);
+			throw e;
+		}
+	}
+
+	private static FileLock tryLock(FileChannel channel, Path path) throws IOException {
+		FileLock lock;
+		try {
+			lock = channel.tryLock();   // - Null if another program has it.
+		}
+		catch (OverlappingFileLockException e) {   // - Another HistoryLog in this program has it, through a different path like a link.
+			lock = null;
+		}
+		if (lock == null) {
+			throw new IOException(path + " is being used by another calculator");
+		}
+		return lock;
+	}
+
+
+	// append method
+	public synchronized void append(CharSequence equation, CharSequence answer, double doubleAnswer) {   // - Only the chars that fit are read, so a long equation isn't copied.
+		MappedByteBuffer segment = segment(count);
+		int offset = recordOffset(count);
+		segment.putLong(offset + TIME_OFFSET, System.currentTimeMillis());
+		segment.putDouble(offset + DOUBLE_OFFSET, doubleAnswer);
+		putText(segment, offset + EQUATION_LENGTH_OFFSET, offset + EQUATION_OFFSET, EQUATION_CHARS, equation);
+		putText(segment, offset + ANSWER_LENGTH_OFFSET, offset + ANSWER_OFFSET, ANSWER_CHARS, answer);
+		count++;
+		header.putLong(COUNT_OFFSET, count);   // - The count goes up after the record is written, so if the calculator crashes, the log never has half a record.
+	}
+
+	private static void putText(MappedByteBuffer segment, int lengthOffset, int textOffset, int capacity, CharSequence text) {
+		int length = Math.min(text.length(), Short.MAX_VALUE);
+		segment.putShort(lengthOffset, (short) length);
+		for (int i = 0; i < Math.min(length, capacity); i++) {
+			segment.putChar(textOffset + i * 2, text.charAt(i));
+		}
+	}
+
+
+	// getters
+	public synchronized long size() {
+		return count;
+	}
+
+	public synchronized long getTime(long index) {   // - Milliseconds since 1970, like System.currentTimeMillis().
+		return segment(checkIndex(index)).getLong(recordOffset(index) + TIME_OFFSET);
+	}
+
+	public synchronized double getDoubleAnswer(long index) {
+		return segment(checkIndex(index)).getDouble(recordOffset(index) + DOUBLE_OFFSET);
+	}
+
+	public synchronized String getEquation(long index) {
+		return getText(checkIndex(index), EQUATION_LENGTH_OFFSET, EQUATION_OFFSET, EQUATION_CHARS);
+	}
+
+	public synchronized String getAnswer(long index) {
+		return getText(checkIndex(index), ANSWER_LENGTH_OFFSET, ANSWER_OFFSET, ANSWER_CHARS);
+	}
+
+	public synchronized boolean isTruncated(long index) {   // - True if the equation or the answer was too long to fit.
+		MappedByteBuffer segment = segment(checkIndex(index));
+		int offset = recordOffset(index);
+		return segment.getShort(offset + EQUATION_LENGTH_OFFSET) > EQUATION_CHARS || segment.getShort(offset + ANSWER_LENGTH_OFFSET) > ANSWER_CHARS;
+	}
+
+	private String getText(long index, int lengthOffset, int textOffset, int capacity) {
+		MappedByteBuffer segment = segment(index);
+		int offset = recordOffset(index);
+		char[] text = new char[Math.min(segment.getShort(offset + lengthOffset), capacity)];
+		for (int i = 0; i < text.length; i++) {
+			text[i] = segment.getChar(offset + textOffset + i * 2);
+		}
+		return new String(text);
+	}
+
+
+	// search method
+	public synchronized long search(String text, long from, boolean forward) {   // - Index of the first record from "from" whose equation or answer has text in it, or -1 if there isn't one.
+		for (long index = from; index >= 0 && index < count; index += forward ? 1 : -1) {
+			MappedByteBuffer segment = segment(index);
+			int offset = recordOffset(index);
+			if (contains(segment, offset + EQUATION_LENGTH_OFFSET, offset + EQUATION_OFFSET, EQUATION_CHARS, text)
+					|| contains(segment, offset + ANSWER_LENGTH_OFFSET, offset + ANSWER_OFFSET, ANSWER_CHARS, text)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean contains(MappedByteBuffer segment, int lengthOffset, int textOffset, int capacity, String text) {   // - Compares chars in the file, so no Strings are made for records that don't match.
+		int length = Math.min(segment.getShort(lengthOffset), capacity);
+		for (int start = 0; start + text.length() <= length; start++) {
+			int i = 0;
+			while (i < text.length() && segment.getChar(textOffset + (start + i) * 2) == text.charAt(i)) {
+				i++;
+			}
+			if (i == text.length()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	// segment methods
+	private MappedByteBuffer segment(long index) {   // - Maps the part of the file with this record, the first time it's needed.
+		int number = (int) (index / SEGMENT_RECORDS);
+		if (number >= segments.length) {
+			segments = Arrays.copyOf(segments, Math.max(number + 1, segments.length * 2));
+		}
+		if (segments[number] == null) {
+			try {
+				segments[number] = channel.map(MapMode.READ_WRITE, HEADER_SIZE + number * SEGMENT_SIZE, SEGMENT_SIZE);   // - Mapping past the end makes the file bigger.
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Can't map the history file", e);
+			}
+		}
+		return segments[number];
+	}
+
+	private static int recordOffset(long index) {
+		return (int) (index % SEGMENT_RECORDS) * RECORD_SIZE;
+	}
+
+	private long checkIndex(long index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("No history record " + index + ", there are " + count);
+		}
+		return index;
+	}
+
+
+	// close method
+	public synchronized void close() throws IOException {   // - Writes everything to the disk and lets other programs open the file. Records are kept without this if only the calculator crashes.
+		if (!channel.isOpen()) {   // - Already closed.
+			return;
+		}
+		for (MappedByteBuffer segment : segments) {
+			if (segment != null) {
+				segment.force();
+			}
+		}
+		header.force();
+		lock.release();
+		channel.close();
+		OPEN_PATHS.remove(openPath);
+	}
+
+}
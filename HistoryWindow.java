@@ -0,0 +1,115 @@
+import java.awt.BorderLayout;
+import java.awt.Font;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.swing.AbstractListModel;
+import javax.swing.JFrame;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+
+/**
+ *
+ * A window that shows the HistoryLog, oldest equation first, with a search box above it.
+ *
+ * The list asks the log for a row only when the row is painted, and every row is the same height, so the list never has
+ * to read the whole log to lay itself out. Scrolling through millions of equations only loads the ones on the screen.
+ *
+ * Typing in the search box and pressing Enter selects the next equation that has the text in it, searching back from the
+ * selected one (or from the newest) toward the oldest.
+ *
+ */
+
+@SuppressWarnings("serial")
+public class HistoryWindow extends JFrame {
+
+	// fields
+	private final HistoryLog history;
+	private final HistoryListModel model;
+	private final JList<String> list;
+	private final JTextField searchField;
+
+
+	// constructor
+	public HistoryWindow(HistoryLog history) {
+		super("History");
+		this.history = history;
+
+		model = new HistoryListModel();
+		list = new JList<>(model);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setFont(new Font("Arial", Font.PLAIN, 14));
+		list.setPrototypeCellValue("00:00:00   0000000000 \u00D7 0000000000 = 0000000000000000000000");   // - Sets a fixed row height and width, so the list doesn't measure every row.
+
+		searchField = new JTextField();
+		searchField.addActionListener(e -> search());
+
+		add(searchField, BorderLayout.NORTH);
+		add(new JScrollPane(list), BorderLayout.CENTER);
+		pack();
+	}
+
+
+	// refresh method
+	public void refresh() {   // - Shows equations that were added to the log since the last refresh.
+		model.refresh();
+	}
+
+
+	// scroll to end method
+	public void scrollToEnd() {
+		if (model.getSize() > 0) {
+			list.ensureIndexIsVisible(model.getSize() - 1);
+		}
+	}
+
+
+	// search method
+	private void search() {
+		String text = searchField.getText();
+		if (text.isEmpty()) {
+			return;
+		}
+		int from = list.getSelectedIndex() >= 0 ? list.getSelectedIndex() - 1 : model.getSize() - 1;
+		long found = history.search(text, from, false);
+		if (found < 0) {
+			setTitle("History - \"" + text + "\" not found");
+			return;
+		}
+		setTitle("History");
+		list.setSelectedIndex((int) found);
+		list.ensureIndexIsVisible((int) found);
+	}
+
+
+	// history list model
+	private class HistoryListModel extends AbstractListModel<String> {
+
+		private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+		private int size = size();
+
+		public int getSize() {
+			return size;
+		}
+
+		public String getElementAt(int index) {   // - Only called for rows that are painted.
+			String time = timeFormat.format(new Date(history.getTime(index)));
+			return time + "   " + history.getEquation(index) + " = " + history.getAnswer(index) + (history.isTruncated(index) ? " ..." : "");
+		}
+
+		private void refresh() {
+			int oldSize = size;
+			size = size();
+			if (size > oldSize) {
+				fireIntervalAdded(this, oldSize, size - 1);
+			}
+		}
+
+		private int size() {
+			return (int) Math.min(history.size(), Integer.MAX_VALUE);   // - A JList can't have more rows than an int can count.
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ *
+ * Counts how many times each latency happened, in buckets, so millions of latencies take a few kilobytes.
+ *
+ * The buckets are log-linear: every power of two is split into SUB_BUCKETS equal buckets. A latency is put in its bucket
+ * with a few shifts and no search, and every bucket is within about 6% of the latencies in it, from a nanosecond to minutes.
+ * Percentiles are the upper end of the bucket they fall in, so they are never lower than the real value.
+ *
+ * Recording doesn't create anything and doesn't lock. A histogram is meant to be used by one thread, like the event
+ * dispatch thread. Other threads that read it may see counts from a moment ago.
+ *
+ */
+
+public class LatencyHistogram {
+
+	// fields
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;   // - Buckets for each power of two.
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long total;   // - Sum of all latencies, for the mean.
+	private long max;
+
+
+	// record method
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucket(nanos)]++;
+		count++;
+		total += nanos;
+		max = Math.max(max, nanos);
+	}
+
+
+	// bucket methods
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {   // - Small values have a bucket each.
+			return (int) value;
+		}
+		int power = 63 - Long.numberOfLeadingZeros(value);   // - value is between 2^power and 2^(power + 1).
+		int sub = (int) (value >>> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);   // - The next SUB_BUCKET_BITS bits after the highest one.
+		return (power - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long bucketEnd(int bucket) {   // - The highest value in the bucket.
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int power = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		long start = (1L << power) + ((long) sub << (power - SUB_BUCKET_BITS));
+		return start + (1L << (power - SUB_BUCKET_BITS)) - 1;
+	}
+
+
+	// percentile method
+	public long getPercentile(double fraction) {   // - Like 0.99 for p99. Zero if nothing was recorded.
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts[bucket];
+			if (seen >= Math.max(rank, 1)) {
+				return Math.min(bucketEnd(bucket), max);
+			}
+		}
+		return max;
+	}
+
+
+	// getters
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public long getMean() {
+		return count == 0 ? 0 : total / count;
+	}
+
+
+	// add method
+	public void add(LatencyHistogram other) {   // - Adds the latencies of another histogram to this one.
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts[bucket] += other.counts[bucket];
+		}
+		count += other.count;
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+
+	// reset method
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+
+	// write method
+	public void write(PrintWriter out) {   // - Every bucket that has latencies in it, as "up to ... ns: count".
+		out.printf("count %d, mean %d ns, p50 %d ns, p99 %d ns, p999 %d ns, max %d ns%n",
+				count, getMean(), getPercentile(0.5), getPercentile(0.99), getPercentile(0.999), max);
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			if (counts[bucket] > 0) {
+				out.printf("  up to %12d ns: %d%n", bucketEnd(bucket), counts[bucket]);
+			}
+		}
+	}
+
+}
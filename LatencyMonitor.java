@@ -0,0 +1,209 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ *
+ * Measures how long a button press takes to reach the screen, and notices when the event dispatch thread is stuck.
+ *
+ * Press to paint: pressStarted() is called when a ButtonActionListener starts, and painted() when one of the display
+ * labels paints. The time between them goes into a LatencyHistogram. A press that doesn't change the display isn't
+ * painted, so it's counted as unpainted instead, and the next press starts a new measurement.
+ *
+ * Stalls: install() puts an EventQueue in front of Swing's that notes when each event starts and ends. A watchdog
+ * thread checks every few milliseconds, and if an event has been running for longer than the threshold, it takes the
+ * stack of the event dispatch thread right then, which shows the work that's blocking it. The full length of the stall
+ * is filled in when the event ends. The last MAX_STALLS stalls are kept.
+ *
+ * Everything but the stalls is only touched on the event dispatch thread, so measuring doesn't lock or create anything.
+ *
+ */
+
+public class LatencyMonitor {
+
+	// fields
+	private static final long WATCHDOG_PERIOD_MILLIS = 10;
+	private static final int MAX_STALLS = 100;
+
+	private final long stallThreshold;   // - Nanoseconds an event can run before it's a stall.
+	private final LatencyHistogram pressToPaint = new LatencyHistogram();
+	private long pressTime;   // - System.nanoTime() of the press that hasn't been painted yet. Zero if there isn't one.
+	private long unpainted;   // - Presses that didn't change the display.
+
+	private volatile long eventStart;   // - System.nanoTime() when the event being dispatched started. Zero when the event dispatch thread is idle.
+	private volatile Thread dispatchThread;
+	private volatile Stall currentStall;   // - The stall of the event being dispatched, so its length can be filled in when it ends.
+	private int depth;   // - Events dispatched inside other events, like by a modal dialog. Only the outermost one is timed.
+	private final ArrayDeque<Stall> stalls = new ArrayDeque<Stall>();   // - Guarded by itself. Written by the watchdog and read on the event dispatch thread.
+	private long stallCount;
+
+
+	// constructor
+	public LatencyMonitor(long stallThresholdMillis) {
+		stallThreshold = stallThresholdMillis * 1_000_000L;
+	}
+
+
+	// install method
+	public void install() {   // - Starts watching the event dispatch thread.
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(new MonitoredEventQueue());
+		Thread watchdog = new Thread(this::watch, "edt-watchdog");
+		watchdog.setDaemon(true);
+		watchdog.start();
+	}
+
+
+	// press methods
+	public void pressStarted() {
+		if (pressTime != 0) {
+			unpainted++;
+		}
+		pressTime = System.nanoTime();
+	}
+
+	public void painted() {
+		if (pressTime != 0) {
+			pressToPaint.record(System.nanoTime() - pressTime);
+			pressTime = 0;
+		}
+	}
+
+
+	// watch method
+	private void watch() {
+		long reportedStart = 0;   // - The event that was already reported, so a long stall is only reported once.
+		while (true) {
+			try {
+				Thread.sleep(WATCHDOG_PERIOD_MILLIS);
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			long start = eventStart;
+			if (start != 0 && start != reportedStart && System.nanoTime() - start > stallThreshold) {
+				reportedStart = start;
+				Thread thread = dispatchThread;
+				Stall stall = new Stall(start, System.currentTimeMillis(), thread.getStackTrace());
+				currentStall = stall;
+				if (eventStart != start) {   // - The event ended while the stall was being made.
+					stall.end(System.nanoTime());
+				}
+				synchronized (stalls) {
+					if (stalls.size() == MAX_STALLS) {
+						stalls.removeFirst();
+					}
+					stalls.addLast(stall);
+					stallCount++;
+				}
+			}
+		}
+	}
+
+
+	// dump method
+	public void dump(Path path) throws IOException {   // - Writes the histogram and the stalls to a text file.
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+			out.println("Press to paint (" + unpainted + " presses weren't painted):");
+			pressToPaint.write(out);
+			out.println();
+			synchronized (stalls) {
+				out.println("Event dispatch thread stalls over " + stallThreshold / 1_000_000 + " ms: " + stallCount + " (last " + stalls.size() + " shown)");
+				for (Stall stall : stalls) {
+					out.println();
+					out.println(new Date(stall.getTime()) + ", " + stall.getDuration() / 1_000_000 + " ms" + (stall.isOver() ? "" : " so far") + ":");
+					for (StackTraceElement element : stall.getStack()) {
+						out.println("    at " + element);
+					}
+				}
+			}
+		}
+	}
+
+
+	// getters
+	public LatencyHistogram getPressToPaint() {
+		return pressToPaint;
+	}
+
+	public long getStallCount() {
+		synchronized (stalls) {
+			return stallCount;
+		}
+	}
+
+	public List<Stall> getStalls() {   // - A copy, oldest first.
+		synchronized (stalls) {
+			return new ArrayList<Stall>(stalls);
+		}
+	}
+
+
+	// monitored event queue
+	private class MonitoredEventQueue extends EventQueue {
+
+		protected void dispatchEvent(AWTEvent event) {
+			if (depth++ == 0) {
+				dispatchThread = Thread.currentThread();
+				eventStart = System.nanoTime();
+			}
+			try {
+				super.dispatchEvent(event);
+			}
+			finally {
+				if (--depth == 0) {
+					Stall stall = currentStall;
+					if (stall != null && stall.eventStart == eventStart) {   // - This event was a stall, and now it's over.
+						stall.end(System.nanoTime());
+						currentStall = null;
+					}
+					eventStart = 0;
+				}
+			}
+		}
+	}
+
+
+	// stall
+	public static class Stall {
+
+		private final long eventStart;   // - System.nanoTime() when the event started.
+		private final long time;   // - System.currentTimeMillis() when the stall was noticed.
+		private final StackTraceElement[] stack;   // - What the event dispatch thread was doing when it was noticed.
+		private volatile long eventEnd;   // - Zero until the event is over.
+
+		private Stall(long eventStart, long time, StackTraceElement[] stack) {
+			this.eventStart = eventStart;
+			this.time = time;
+			this.stack = stack;
+		}
+
+		private void end(long eventEnd) {
+			this.eventEnd = eventEnd;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public long getDuration() {   // - Nanoseconds. Until the event is over, this is how long it has been running.
+			return (isOver() ? eventEnd : System.nanoTime()) - eventStart;
+		}
+
+		public boolean isOver() {
+			return eventEnd != 0;
+		}
+
+		public StackTraceElement[] getStack() {
+			return stack;
+		}
+	}
+
+}
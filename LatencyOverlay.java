@@ -0,0 +1,74 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ *
+ * Shows a LatencyMonitor's numbers live, in a small box over the bottom of the calculator.
+ *
+ * It's meant to be the frame's glass pane, which is drawn over everything else. It doesn't listen to the mouse,
+ * so clicks still go to the buttons under it. The numbers are repainted twice a second while it's visible.
+ *
+ */
+
+@SuppressWarnings("serial")
+public class LatencyOverlay extends JComponent {
+
+	// fields
+	private static final int REFRESH_MILLIS = 500;
+	private static final Color BACKGROUND = new Color(0, 0, 0, 170);   // - See-through black.
+	private static final Font FONT = new Font("Monospaced", Font.PLAIN, 11);
+
+	private final LatencyMonitor monitor;
+	private final Timer timer;
+
+
+	// constructor
+	public LatencyOverlay(LatencyMonitor monitor) {
+		this.monitor = monitor;
+		timer = new Timer(REFRESH_MILLIS, e -> repaint());
+		setOpaque(false);
+	}
+
+
+	// set visible method
+	public void setVisible(boolean visible) {   // - Only refreshes while it can be seen.
+		super.setVisible(visible);
+		if (visible) {
+			timer.start();
+		}
+		else {
+			timer.stop();
+		}
+	}
+
+
+	// paint method
+	protected void paintComponent(Graphics g) {
+		LatencyHistogram histogram = monitor.getPressToPaint();
+		String[] lines = {
+			String.format("press to paint  n=%d", histogram.getCount()),
+			String.format("p50 %.2f  p99 %.2f  max %.2f ms", histogram.getPercentile(0.5) / 1e6, histogram.getPercentile(0.99) / 1e6, histogram.getMax() / 1e6),
+			String.format("EDT stalls  %d", monitor.getStallCount())
+		};
+
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setFont(FONT);
+		int lineHeight = g2.getFontMetrics().getHeight();
+		int boxHeight = lineHeight * lines.length + 8;
+		int top = getHeight() - boxHeight;
+		g2.setColor(BACKGROUND);
+		g2.fillRect(0, top, getWidth(), boxHeight);
+		g2.setColor(Color.white);
+		for (int i = 0; i < lines.length; i++) {
+			g2.drawString(lines[i], 6, top + 4 + g2.getFontMetrics().getAscent() + i * lineHeight);
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ *
+ * Keeps the value of a number while it's being typed, one character at a time.
+ *
+ * Instead of parsing the whole number again every time a digit is added or deleted, the accumulator keeps
+ * the significant digits as a long and counts how many digits are after the decimal point.
+ * Adding a digit and deleting the last one are both a multiplication or division by ten, and never create any objects.
+ *
+ * doubleValue() gives exactly the same double as Double.parseDouble would for the same text.
+ * When the number has few enough digits, dividing the digits by a power of ten gives the correctly rounded answer,
+ * because both of them are exact doubles. Longer numbers fall back to Double.parseDouble, but not for digits that
+ * can't change the double: a zero after the decimal point, another digit on a number that's already too big for a double,
+ * or a digit so far after the first EXACT_DIGITS significant digits that the double is already decided.
+ *
+ * rationalValue() gives the exact value as a Rational, from the same long as the fast path, so it creates nothing either.
+ *
+ * decimalValue() gives the exact value as a BigDecimal. Once it has been asked for, it's kept up to date as digits are
+ * added and deleted, by multiplying or dividing its unscaled value by ten, so it's never built from the text again.
+ *
+ */
+
+public class NumberAccumulator {
+
+	// fields
+	static final int MAX_DIGITS = 18;   // - Up to 18 digits always fit in a long.
+	static final long MAX_EXACT = 1L << 53;   // - Every long below this is an exact double.
+	private static final double[] POWERS_OF_TEN = new double[23];   // - Every power of ten up to 10^22 is an exact double.
+	private static final int INFINITE_DIGITS = 310;   // - An integer with this many digits is at least 10^309, too big for a double.
+	private static final int EXACT_DIGITS = 800;   // - More than the 767 significant digits of the longest double or halfway point between two doubles.
+
+	private long mantissa;   // - The first MAX_DIGITS significant digits, without the decimal point.
+	private int digits;   // - Number of significant digits, not counting leading zeros.
+	private int leadingZeros;   // - Zeros before the first significant digit and before the decimal point.
+	private int fractionDigits;   // - Number of digits after the decimal point, including zeros.
+	private boolean decimalEntered;   // - True if the number has a decimal point.
+	private boolean negative;
+	private boolean plain;   // - False if the text isn't just digits and a decimal point, like "1.0E20" or "Error".
+	private int stickyDigits;   // - Non-zero digits after the first EXACT_DIGITS significant digits. With one of them, the number can't be exactly on a double or halfway between two, so more of them don't change the double.
+
+	private boolean valueCached;   // - True if value is up to date with the digits.
+	private double value;
+	private BigDecimal decimal;   // - Exact value, or null if it hasn't been asked for since the number was set.
+
+
+	// powers of ten
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+
+	// constructor
+	public NumberAccumulator() {
+		clear();
+	}
+
+
+	// clear method
+	public void clear() {   // - Starts a new, empty number.
+		mantissa = 0;
+		digits = 0;
+		leadingZeros = 0;
+		fractionDigits = 0;
+		decimalEntered = false;
+		negative = false;
+		plain = true;
+		stickyDigits = 0;
+		valueCached = false;
+		decimal = null;
+	}
+
+
+	// set method
+	public boolean set(CharSequence text) {   // - Starts over with a number that wasn't typed, like an answer. Returns false if the text isn't plain.
+		clear();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '-' && i == 0) {
+				negative = true;
+			}
+			else if ((c >= '0' && c <= '9') || (c == '.' && !decimalEntered)) {
+				append(c);
+			}
+			else {
+				plain = false;
+			}
+		}
+		return plain;
+	}
+
+
+	// copy method
+	public void copy(NumberAccumulator other) {   // - Makes this number exactly the same as other, without looking at any digits.
+		mantissa = other.mantissa;
+		digits = other.digits;
+		leadingZeros = other.leadingZeros;
+		fractionDigits = other.fractionDigits;
+		decimalEntered = other.decimalEntered;
+		negative = other.negative;
+		plain = other.plain;
+		stickyDigits = other.stickyDigits;
+		valueCached = other.valueCached;
+		value = other.value;
+		decimal = other.decimal;   // - BigDecimals never change, so it can be shared.
+	}
+
+
+	// append method
+	public void append(char c) {   // - Adds a digit or the decimal point to the end of the number.
+		if (c == '.') {   // - "12." is the same number as "12", so the value stays the same.
+			decimalEntered = true;
+			valueCached = valueCached && plain;
+			return;
+		}
+		boolean sticky = digits >= EXACT_DIGITS && c != '0';
+		valueCached = valueCached && plain && (decimalEntered ? c == '0' || (sticky && stickyDigits > 0) : Double.isInfinite(value));
+		if (sticky) {
+			stickyDigits++;
+		}
+		if (decimal != null) {   // - 12.3 becomes 12.34 by making the unscaled value 1234 and the scale one bigger.
+			BigInteger unscaled = decimal.unscaledValue().multiply(BigInteger.TEN);
+			BigInteger digit = BigInteger.valueOf(c - '0');
+			unscaled = negative ? unscaled.subtract(digit) : unscaled.add(digit);
+			decimal = new BigDecimal(unscaled, decimal.scale() + (decimalEntered ? 1 : 0));
+		}
+		if (decimalEntered) {
+			fractionDigits++;
+		}
+		if (digits == 0 && c == '0') {   // - Leading zeros aren't significant.
+			if (!decimalEntered) {
+				leadingZeros++;
+			}
+			return;
+		}
+		if (digits < MAX_DIGITS) {
+			mantissa = mantissa * 10 + (c - '0');
+		}
+		digits++;
+	}
+
+
+	// remove last method
+	public void removeLast(char c) {   // - Undoes append(c). c must be the last character of the number.
+		if (c == '.') {
+			decimalEntered = false;
+			valueCached = valueCached && plain;
+			return;
+		}
+		boolean sticky = digits > EXACT_DIGITS && c != '0';
+		if (sticky) {
+			stickyDigits--;
+		}
+		valueCached = valueCached && plain && (decimalEntered ? c == '0' || (sticky && stickyDigits > 0) : digits - 1 >= INFINITE_DIGITS && Double.isInfinite(value));
+		if (decimal != null) {
+			BigInteger digit = BigInteger.valueOf(c - '0');
+			BigInteger unscaled = negative ? decimal.unscaledValue().add(digit) : decimal.unscaledValue().subtract(digit);
+			decimal = new BigDecimal(unscaled.divide(BigInteger.TEN), decimal.scale() - (decimalEntered ? 1 : 0));
+		}
+		if (decimalEntered) {
+			fractionDigits--;
+		}
+		if (digits == 0) {   // - It was a leading zero.
+			if (!decimalEntered) {
+				leadingZeros--;
+			}
+			return;
+		}
+		if (digits <= MAX_DIGITS) {   // - Digits after the first MAX_DIGITS never changed the mantissa.
+			mantissa = (mantissa - (c - '0')) / 10;
+		}
+		digits--;
+	}
+
+
+	// double value method
+	public double doubleValue(CharSequence text) {   // - text is the number as it's displayed. It's only read if the number is too long for the fast path.
+		if (!valueCached) {
+			value = calculateValue(text);
+			valueCached = true;
+		}
+		return value;
+	}
+
+
+	// decimal value method
+	public BigDecimal decimalValue(CharSequence text) {   // - Returns null if the text isn't a number, like "Error".
+		if (decimal == null) {
+			if (plain && digits <= MAX_DIGITS) {
+				decimal = BigDecimal.valueOf(negative ? -mantissa : mantissa, fractionDigits);
+			}
+			else {
+				try {
+					decimal = new BigDecimal(text.toString());   // - Long numbers, and answers like "1.5E+1000".
+				}
+				catch (NumberFormatException e) {
+					return null;
+				}
+			}
+		}
+		return decimal;
+	}
+
+
+	// rational value method
+	public boolean rationalValue(CharSequence text, Rational value) {   // - Puts the exact value into value. Returns false if the text isn't a number, like "Error".
+		if (plain && digits <= MAX_DIGITS && fractionDigits <= MAX_DIGITS) {   // - The digits and the power of ten both fit in longs.
+			value.setDecimal(negative ? -mantissa : mantissa, fractionDigits);
+			return true;
+		}
+		return value.parse(text);   // - Long numbers, and answers like "1/3" or "1.5E+30".
+	}
+
+
+	// calculate value method
+	private double calculateValue(CharSequence text) {
+		if (digits == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+		if (plain && digits <= MAX_DIGITS) {
+			double result = exactDouble(mantissa, fractionDigits, negative);
+			if (!Double.isNaN(result)) {
+				return result;
+			}
+		}
+		return Double.parseDouble(text.toString());   // - Too many digits to be exact.
+	}
+
+
+	// exact double method
+	static double exactDouble(long mantissa, int fractionDigits, boolean negative) {   // - The correctly rounded double of mantissa / 10^fractionDigits, or NaN if one division can't give it. mantissa isn't negative.
+		double result;
+		if (fractionDigits == 0) {   // - Converting a long to a double is correctly rounded.
+			result = mantissa;
+		}
+		else if (mantissa < MAX_EXACT && fractionDigits < POWERS_OF_TEN.length) {   // - Both are exact, so the division is correctly rounded.
+			result = mantissa / POWERS_OF_TEN[fractionDigits];
+		}
+		else {
+			return Double.NaN;
+		}
+		return negative ? -result : result;
+	}
+
+
+	// getters
+	public boolean hasDigits() {   // - False if there's nothing to take the value of, like "" or "." or "-".
+		return digits > 0 || leadingZeros > 0 || fractionDigits > 0;
+	}
+
+	public boolean isPlain() {
+		return plain;
+	}
+
+	public boolean hasDecimalPoint() {
+		return decimalEntered;
+	}
+
+}
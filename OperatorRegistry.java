@@ -0,0 +1,195 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ *
+ * Every operator the calculator knows: the built-in ones (BuiltInOperator), and after them the ones plug-ins add,
+ * found with ServiceLoader the first time the registry is used. Each operator has an index, and the engine keeps
+ * indexes instead of a flag and a block of code for each operator, so adding an operator doesn't change the engine.
+ *
+ * apply(index, first, second) calculates the double answer of any operator with TABLE, one MethodHandle that switches
+ * on the index (MethodHandles.tableSwitch) and has every operator's handle as a case. TABLE is static final, which the
+ * JIT treats as a constant, so the switch and its cases are inlined like ordinary code, and a plug-in's operation costs
+ * the same as a built-in one. The cases of unary operators ignore second.
+ *
+ * There can be at most MAX_OPERATORS operators, so the engine can keep the binary operators that were entered in the
+ * bits of a long. A plug-in that can't be loaded, has a handle of the wrong type, or has the same name as another
+ * operator is left out with a warning, and the calculator starts without it. An operation that throws an exception
+ * gives an answer that isn't a number, which shows "Error", instead of breaking the calculator.
+ *
+ */
+
+public final class OperatorRegistry {
+
+	// fields
+	public static final int MAX_OPERATORS = 64;
+
+	private static final MethodType BINARY_TYPE = MethodType.methodType(double.class, double.class, double.class);
+	private static final MethodType UNARY_TYPE = MethodType.methodType(double.class, double.class);
+
+	private static final int BUILT_INS = BuiltInOperator.values().length;   // - Plug-ins' indexes start here.
+	private static final CalculatorOperator[] OPERATORS = load();
+	private static final MethodHandle TABLE = table();   // - (int index, double first, double second)double
+	private static final int[] KEY_INDEXES = keyIndexes();   // - The index of each key's operator, by the key's ordinal. -1 for keys that aren't operators.
+	private static final CalculatorOperator[] LATIN_OPERATORS = new CalculatorOperator[256];   // - Plug-in operators indexed by the character typed for them, like CalculatorEngine.Key's.
+
+	static {
+		for (int i = BUILT_INS; i < OPERATORS.length; i++) {
+			for (char c : OPERATORS[i].getTypedChars().toCharArray()) {
+				if (c < LATIN_OPERATORS.length && CalculatorEngine.Key.forChar(c) == null && LATIN_OPERATORS[c] == null) {
+					LATIN_OPERATORS[c] = OPERATORS[i];
+				}
+			}
+		}
+	}
+
+
+	// constructor
+	private OperatorRegistry() {
+	}
+
+
+	// load methods
+	private static CalculatorOperator[] load() {
+		List<CalculatorOperator> operators = new ArrayList<CalculatorOperator>(Arrays.asList(BuiltInOperator.values()));
+		Iterator<CalculatorOperator> plugins = ServiceLoader.load(CalculatorOperator.class).iterator();
+		while (true) {
+			CalculatorOperator plugin;
+			try {
+				if (!plugins.hasNext()) {
+					break;
+				}
+				plugin = plugins.next();
+			}
+			catch (ServiceConfigurationError e) {   // - A class that's listed but can't be made. The ones after it can still be loaded.
+				System.err.println("Operator not loaded: " + e.getMessage());
+				continue;
+			}
+			String problem = check(plugin, operators);
+			if (problem != null) {
+				System.err.println("Operator " + plugin.getClass().getName() + " not loaded: " + problem);
+			}
+			else {
+				operators.add(plugin);
+			}
+		}
+		return operators.toArray(new CalculatorOperator[0]);
+	}
+
+	private static String check(CalculatorOperator plugin, List<CalculatorOperator> operators) {   // - Why the plug-in can't be added, or null if it can.
+		if (operators.size() == MAX_OPERATORS) {
+			return "there are already " + MAX_OPERATORS + " operators";
+		}
+		if (plugin.getName() == null || plugin.getText() == null || plugin.getTypedChars() == null || plugin.getHandle() == null) {
+			return "its name, text, typed chars or handle is null";
+		}
+		for (CalculatorOperator operator : operators) {
+			if (operator.getName().equals(plugin.getName())) {
+				return "there's already an operator named " + plugin.getName();
+			}
+		}
+		try {
+			plugin.getHandle().asType(plugin.isUnary() ? UNARY_TYPE : BINARY_TYPE);
+		}
+		catch (WrongMethodTypeException e) {
+			return "its handle is " + plugin.getHandle().type() + " instead of " + (plugin.isUnary() ? UNARY_TYPE : BINARY_TYPE);
+		}
+		return null;
+	}
+
+	private static MethodHandle table() {
+		MethodHandle[] cases = new MethodHandle[OPERATORS.length];
+		for (int i = 0; i < OPERATORS.length; i++) {
+			MethodHandle handle;
+			if (OPERATORS[i].isUnary()) {
+				handle = MethodHandles.dropArguments(OPERATORS[i].getHandle().asType(UNARY_TYPE), 1, double.class);
+			}
+			else {
+				handle = OPERATORS[i].getHandle().asType(BINARY_TYPE);
+			}
+			cases[i] = MethodHandles.dropArguments(handle, 0, int.class);
+		}
+		try {
+			MethodHandle unknown = MethodHandles.lookup().findStatic(OperatorRegistry.class, "unknown", MethodType.methodType(double.class, int.class, double.class, double.class));
+			return MethodHandles.tableSwitch(unknown, cases);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static double unknown(int index, double first, double second) {   // - The switch's default case.
+		throw new IndexOutOfBoundsException("No operator " + index);
+	}
+
+	private static int[] keyIndexes() {
+		int[] indexes = new int[CalculatorEngine.Key.values().length];
+		Arrays.fill(indexes, -1);
+		for (BuiltInOperator operator : BuiltInOperator.values()) {
+			indexes[operator.getKey().ordinal()] = operator.ordinal();
+		}
+		return indexes;
+	}
+
+
+	// apply method
+	public static double apply(int index, double first, double second) {   // - The double answer of the operator at index. second is ignored by unary operators.
+		try {
+			return (double) TABLE.invokeExact(index, first, second);
+		}
+		catch (Error e) {
+			throw e;
+		}
+		catch (Throwable e) {   // - Only plug-ins' operations can throw.
+			return Double.NaN;
+		}
+	}
+
+
+	// lookup methods
+	public static int size() {
+		return OPERATORS.length;
+	}
+
+	public static CalculatorOperator get(int index) {
+		return OPERATORS[index];
+	}
+
+	public static boolean isBuiltIn(int index) {
+		return index < BUILT_INS;
+	}
+
+	public static int indexOf(CalculatorEngine.Key key) {   // - -1 if the key isn't an operator.
+		return KEY_INDEXES[key.ordinal()];
+	}
+
+	public static int indexOf(CalculatorOperator operator) {   // - -1 if the operator isn't registered.
+		for (int i = 0; i < OPERATORS.length; i++) {
+			if (OPERATORS[i] == operator) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public static CalculatorOperator forChar(char c) {   // - The plug-in operator typed with this character, or null if there isn't one. Keys' characters come first.
+		if (c < LATIN_OPERATORS.length) {
+			return LATIN_OPERATORS[c];
+		}
+		for (int i = BUILT_INS; i < OPERATORS.length; i++) {
+			if (OPERATORS[i].getTypedChars().indexOf(c) >= 0 && CalculatorEngine.Key.forChar(c) == null) {
+				return OPERATORS[i];
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,451 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ *
+ * An exact fraction, numerator / denominator, for the calculator's exact mode, so "1 / 3 * 3" is exactly 1.
+ *
+ * A Rational can be changed, like NumberAccumulator, so the engine makes the few it needs once and calculates into them.
+ * The numerator and denominator are longs, and every step on them is checked for overflow, without exceptions. Only a fraction that doesn't
+ * fit in two longs is kept as BigIntegers, so the arithmetic on everyday numbers creates no objects. When a BigInteger
+ * answer is small enough again, it goes back into the longs.
+ *
+ * A fraction is always in lowest terms, with a denominator above zero, so the same number always has the same fields.
+ *
+ * Like DecimalMath, the operator methods take null for a number that isn't one, like "Error", and return false when
+ * there's no exact answer, like dividing by zero or the square root of 2. The engine then uses its double answer.
+ *
+ * A fraction is written as a decimal when its decimals end, like "0.125" or "42", and as "1/3" when they'd repeat
+ * forever, so the text is always the exact value and parse() gives back the same fraction.
+ *
+ */
+
+public final class Rational {
+
+	// fields
+	private static final long[] POWERS_OF_TEN = new long[19];   // - Every power of ten that fits in a long.
+	private static final BigInteger FIVE = BigInteger.valueOf(5);
+	private static final int MAX_EXPONENT = 100000;   // - Answers like "1E+1000000" from decimal mode aren't made into fractions, because the fraction would be huge.
+
+	private long numerator;
+	private long denominator;   // - Above zero. Both longs are only used when big is false.
+	private boolean big;   // - True if the fraction didn't fit in the longs, and is in the BigIntegers instead.
+	private BigInteger bigNumerator;
+	private BigInteger bigDenominator;
+
+
+	// powers of ten
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+
+	// constructor
+	public Rational() {
+		setLongs(0, 1);
+	}
+
+
+	// set methods
+	public void set(Rational other) {
+		numerator = other.numerator;
+		denominator = other.denominator;
+		big = other.big;
+		bigNumerator = other.bigNumerator;   // - BigIntegers never change, so they can be shared.
+		bigDenominator = other.bigDenominator;
+	}
+
+	public void setDecimal(long unscaled, int scale) {   // - unscaled / 10^scale, like 125 and 2 for 1.25. scale is at most 18.
+		set(unscaled, POWERS_OF_TEN[scale]);
+	}
+
+	private void set(long numerator, long denominator) {   // - Any fraction with a denominator above zero, not yet in lowest terms.
+		if (numerator == Long.MIN_VALUE) {   // - Its absolute value doesn't fit in a long.
+			setBig(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+			return;
+		}
+		long gcd = gcd(Math.abs(numerator), denominator);
+		setLongs(numerator / gcd, denominator / gcd);
+	}
+
+	private void setLongs(long numerator, long denominator) {   // - Already in lowest terms.
+		this.numerator = numerator;
+		this.denominator = denominator;
+		big = false;
+		bigNumerator = null;
+		bigDenominator = null;
+	}
+
+	private void setBig(BigInteger numerator, BigInteger denominator) {   // - Any fraction, not yet in lowest terms.
+		if (denominator.signum() < 0) {
+			numerator = numerator.negate();
+			denominator = denominator.negate();
+		}
+		BigInteger gcd = numerator.gcd(denominator);
+		if (!gcd.equals(BigInteger.ONE) && gcd.signum() != 0) {
+			numerator = numerator.divide(gcd);
+			denominator = denominator.divide(gcd);
+		}
+		if (numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE && numerator.longValue() != Long.MIN_VALUE) {
+			setLongs(numerator.longValue(), denominator.longValue());   // - Small enough for the longs again.
+		}
+		else {
+			this.numerator = 0;
+			this.denominator = 1;
+			big = true;
+			bigNumerator = numerator;
+			bigDenominator = denominator;
+		}
+	}
+
+
+	// parse method
+	public boolean parse(CharSequence text) {   // - Reads a number like "12", "-0.125", "1.5E-7" or "-1/3". Returns false if the text isn't one, like "Error".
+		int length = text.length();
+		int i = 0;
+		boolean negative = false;
+		if (i < length && text.charAt(i) == '-') {
+			negative = true;
+			i++;
+		}
+		int start = i;
+		long unscaled = 0;
+		boolean overflow = false;
+		int digits = 0;
+		int scale = 0;
+		boolean decimalEntered = false;
+		for (; i < length; i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (unscaled > (Long.MAX_VALUE - 9) / 10) {
+					overflow = true;
+				}
+				unscaled = unscaled * 10 + (c - '0');
+				digits++;
+				if (decimalEntered) {
+					scale++;
+				}
+			}
+			else if (c == '.' && !decimalEntered) {
+				decimalEntered = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		int end = i;
+
+		if (i < length && text.charAt(i) == '/') {   // - A fraction, like "1/3".
+			if (decimalEntered) {
+				return false;
+			}
+			int denominatorStart = ++i;
+			long unscaledDenominator = 0;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+				if (unscaledDenominator > (Long.MAX_VALUE - 9) / 10) {
+					overflow = true;
+				}
+				unscaledDenominator = unscaledDenominator * 10 + (text.charAt(i) - '0');
+				i++;
+			}
+			if (i != length || i == denominatorStart) {
+				return false;
+			}
+			if (overflow) {
+				BigInteger bigDenominator = new BigInteger(text.subSequence(denominatorStart, length).toString());
+				if (bigDenominator.signum() == 0) {
+					return false;
+				}
+				setBig(new BigInteger(text.subSequence(negative ? 0 : start, end).toString()), bigDenominator);
+			}
+			else {
+				if (unscaledDenominator == 0) {
+					return false;
+				}
+				set(negative ? -unscaled : unscaled, unscaledDenominator);
+			}
+			return true;
+		}
+
+		long exponent = 0;
+		if (i < length && (text.charAt(i) == 'E' || text.charAt(i) == 'e')) {   // - An answer from double or decimal mode, like "1.5E+30".
+			i++;
+			boolean negativeExponent = false;
+			if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+				negativeExponent = text.charAt(i) == '-';
+				i++;
+			}
+			int exponentStart = i;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9' && exponent <= MAX_EXPONENT) {
+				exponent = exponent * 10 + (text.charAt(i) - '0');
+				i++;
+			}
+			if (i == exponentStart || exponent > MAX_EXPONENT) {
+				return false;
+			}
+			if (negativeExponent) {
+				exponent = -exponent;
+			}
+		}
+		if (i != length) {
+			return false;
+		}
+
+		long power = exponent - scale;   // - The value is unscaled * 10^power.
+		if (!overflow && power <= 0 && -power < POWERS_OF_TEN.length) {   // - The fast path for everything that's typed.
+			setDecimal(negative ? -unscaled : unscaled, (int) -power);
+			return true;
+		}
+		BigDecimal decimal = new BigDecimal(text.subSequence(0, end).toString()).scaleByPowerOfTen((int) exponent);
+		BigInteger unscaledValue = decimal.unscaledValue();
+		if (decimal.scale() <= 0) {
+			setBig(unscaledValue.multiply(BigInteger.TEN.pow(-decimal.scale())), BigInteger.ONE);
+		}
+		else {
+			setBig(unscaledValue, BigInteger.TEN.pow(decimal.scale()));
+		}
+		return true;
+	}
+
+
+	// operator methods
+	public boolean add(Rational a, Rational b) {   // - Makes this a + b. a or b can be this.
+		if (a == null || b == null) {
+			return false;
+		}
+		if (!a.big && !b.big) {   // - a/b + c/d = (a * d/g + c * b/g) / (b/g * d), where g is the gcd of b and d.
+			long gcd = gcd(a.denominator, b.denominator);
+			long aScale = a.denominator / gcd;
+			long bScale = b.denominator / gcd;
+			if (!multiplyOverflows(a.numerator, bScale) && !multiplyOverflows(b.numerator, aScale) && !multiplyOverflows(aScale, b.denominator)) {
+				long left = a.numerator * bScale;
+				long right = b.numerator * aScale;
+				long numerator = left + right;
+				if (((left ^ numerator) & (right ^ numerator)) >= 0) {   // - The sum didn't overflow either.
+					set(numerator, aScale * b.denominator);
+					return true;
+				}
+			}
+		}
+		setBig(a.bigNumerator().multiply(b.bigDenominator()).add(b.bigNumerator().multiply(a.bigDenominator())), a.bigDenominator().multiply(b.bigDenominator()));
+		return true;
+	}
+
+	public boolean subtract(Rational a, Rational b) {   // - Makes this a - b.
+		if (a == null || b == null) {
+			return false;
+		}
+		if (!a.big && !b.big) {
+			long gcd = gcd(a.denominator, b.denominator);
+			long aScale = a.denominator / gcd;
+			long bScale = b.denominator / gcd;
+			if (!multiplyOverflows(a.numerator, bScale) && !multiplyOverflows(b.numerator, aScale) && !multiplyOverflows(aScale, b.denominator)) {
+				long left = a.numerator * bScale;
+				long right = b.numerator * aScale;
+				long numerator = left - right;
+				if (((left ^ right) & (left ^ numerator)) >= 0) {
+					set(numerator, aScale * b.denominator);
+					return true;
+				}
+			}
+		}
+		setBig(a.bigNumerator().multiply(b.bigDenominator()).subtract(b.bigNumerator().multiply(a.bigDenominator())), a.bigDenominator().multiply(b.bigDenominator()));
+		return true;
+	}
+
+	public boolean multiply(Rational a, Rational b) {   // - Makes this a * b.
+		if (a == null || b == null) {
+			return false;
+		}
+		if (!a.big && !b.big) {
+			multiplyLongs(a.numerator, a.denominator, b.numerator, b.denominator);
+			return true;
+		}
+		setBig(a.bigNumerator().multiply(b.bigNumerator()), a.bigDenominator().multiply(b.bigDenominator()));
+		return true;
+	}
+
+	public boolean divide(Rational a, Rational b) {   // - Makes this a / b. False if b is zero.
+		if (a == null || b == null || b.signum() == 0) {
+			return false;
+		}
+		if (!a.big && !b.big) {   // - Dividing by c/d is multiplying by d/c, with the sign moved to the top.
+			multiplyLongs(a.numerator, a.denominator, b.numerator < 0 ? -b.denominator : b.denominator, Math.abs(b.numerator));
+			return true;
+		}
+		setBig(a.bigNumerator().multiply(b.bigDenominator()), a.bigDenominator().multiply(b.bigNumerator()));
+		return true;
+	}
+
+	private void multiplyLongs(long a, long b, long c, long d) {   // - Makes this a/b * c/d. Both are in lowest terms.
+		if (a == 0 || c == 0) {
+			setLongs(0, 1);
+			return;
+		}
+		long gcd1 = gcd(Math.abs(a), d);   // - Cancelling first keeps the numbers small, and the answer is in lowest terms already.
+		long gcd2 = gcd(Math.abs(c), b);
+		a /= gcd1;
+		d /= gcd1;
+		c /= gcd2;
+		b /= gcd2;
+		if (multiplyOverflows(a, c) || multiplyOverflows(b, d) || a * c == Long.MIN_VALUE) {
+			setBig(BigInteger.valueOf(a).multiply(BigInteger.valueOf(c)), BigInteger.valueOf(b).multiply(BigInteger.valueOf(d)));
+		}
+		else {
+			setLongs(a * c, b * d);
+		}
+	}
+
+	private static boolean multiplyOverflows(long x, long y) {   // - The high half of the 128 bit product is only the sign of the low half when it fits.
+		return Math.multiplyHigh(x, y) != (x * y) >> 63;
+	}
+
+	public boolean sqrt(Rational a) {   // - Makes this the square root of a. False if a is negative, or isn't the square of a fraction, like 2.
+		if (a == null || a.signum() < 0) {
+			return false;
+		}
+		if (!a.big) {   // - In lowest terms, a fraction is a square only if its numerator and denominator both are.
+			long numeratorRoot = sqrt(a.numerator);
+			long denominatorRoot = sqrt(a.denominator);
+			if (numeratorRoot < 0 || denominatorRoot < 0) {
+				return false;
+			}
+			setLongs(numeratorRoot, denominatorRoot);
+			return true;
+		}
+		BigInteger numeratorRoot = a.bigNumerator.sqrt();
+		BigInteger denominatorRoot = a.bigDenominator.sqrt();
+		if (!numeratorRoot.multiply(numeratorRoot).equals(a.bigNumerator) || !denominatorRoot.multiply(denominatorRoot).equals(a.bigDenominator)) {
+			return false;
+		}
+		setBig(numeratorRoot, denominatorRoot);
+		return true;
+	}
+
+	private static long sqrt(long value) {   // - The square root of a long that's a perfect square, or -1 if it isn't one.
+		long root = (long) Math.sqrt(value);   // - Can be one off for big longs, because the double rounds them.
+		while (root * root > value) {
+			root--;
+		}
+		while ((root + 1) * (root + 1) <= value && root < 3037000499L) {   // - 3037000499 is the biggest root whose square fits in a long.
+			root++;
+		}
+		return root * root == value ? root : -1;
+	}
+
+
+	// value methods
+	public int signum() {
+		return big ? bigNumerator.signum() : Long.signum(numerator);
+	}
+
+	public double doubleValue() {
+		if (!big && Math.abs(numerator) < NumberAccumulator.MAX_EXACT && denominator < NumberAccumulator.MAX_EXACT) {   // - Both are exact, so the division is correctly rounded.
+			return (double) numerator / denominator;
+		}
+		return new BigDecimal(bigNumerator()).divide(new BigDecimal(bigDenominator()), MathContext.DECIMAL128).doubleValue();
+	}
+
+	private BigInteger bigNumerator() {
+		return big ? bigNumerator : BigInteger.valueOf(numerator);
+	}
+
+	private BigInteger bigDenominator() {
+		return big ? bigDenominator : BigInteger.valueOf(denominator);
+	}
+
+
+	// append method
+	public void appendTo(StringBuilder text) {   // - Writes the exact value, as a decimal if it ends, or else as a fraction.
+		if (!big) {
+			if (denominator == 1) {   // - Whole numbers have no decimal point, like the answers of double mode.
+				text.append(numerator);
+				return;
+			}
+			int twos = Long.numberOfTrailingZeros(denominator);
+			long rest = denominator >>> twos;
+			int fives = 0;
+			while (rest % 5 == 0) {
+				rest /= 5;
+				fives++;
+			}
+			int scale = Math.max(twos, fives);   // - The decimal has this many digits after the point.
+			if (rest == 1 && scale < POWERS_OF_TEN.length && !multiplyOverflows(numerator, POWERS_OF_TEN[scale] / denominator)) {
+				appendDecimal(text, numerator * (POWERS_OF_TEN[scale] / denominator), scale);
+				return;
+			}
+			if (rest != 1) {
+				text.append(numerator).append('/').append(denominator);
+				return;
+			}
+		}
+		BigInteger rest = bigDenominator().shiftRight(bigDenominator().getLowestSetBit());
+		while (rest.mod(FIVE).signum() == 0) {
+			rest = rest.divide(FIVE);
+		}
+		if (rest.equals(BigInteger.ONE)) {   // - The division ends, so it's exact.
+			text.append(new BigDecimal(bigNumerator()).divide(new BigDecimal(bigDenominator())).toPlainString());
+		}
+		else {
+			text.append(bigNumerator()).append('/').append(bigDenominator());
+		}
+	}
+
+	private static void appendDecimal(StringBuilder text, long unscaled, int scale) {   // - Like "-0.125" for -125 and 3.
+		long whole = Math.abs(unscaled / POWERS_OF_TEN[scale]);   // - Divided before taking the absolute value, which Long.MIN_VALUE doesn't have.
+		long fraction = Math.abs(unscaled % POWERS_OF_TEN[scale]);
+		if (unscaled < 0) {
+			text.append('-');
+		}
+		text.append(whole).append('.');
+		for (int i = scale - 1; i > 0 && fraction < POWERS_OF_TEN[i]; i--) {   // - Zeros right after the point, like in 0.05.
+			text.append('0');
+		}
+		text.append(fraction);
+	}
+
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		appendTo(text);
+		return text.toString();
+	}
+
+
+	// equals methods
+	public boolean equals(Object other) {   // - Fractions are always in lowest terms, so equal fractions have equal fields.
+		if (!(other instanceof Rational)) {
+			return false;
+		}
+		Rational rational = (Rational) other;
+		if (big != rational.big) {
+			return false;
+		}
+		if (big) {
+			return bigNumerator.equals(rational.bigNumerator) && bigDenominator.equals(rational.bigDenominator);
+		}
+		return numerator == rational.numerator && denominator == rational.denominator;
+	}
+
+	public int hashCode() {
+		return big ? bigNumerator.hashCode() * 31 + bigDenominator.hashCode() : Long.hashCode(numerator) * 31 + Long.hashCode(denominator);
+	}
+
+
+	// gcd method
+	private static long gcd(long a, long b) {   // - a and b aren't negative. The gcd of 0 and b is b, and of 0 and 0 is 1, so dividing by it is always safe.
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a == 0 ? 1 : a;
+	}
+
+}
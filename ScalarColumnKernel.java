@@ -0,0 +1,80 @@
+/**
+ *
+ * A ColumnKernel with plain loops, one element at a time.
+ *
+ * This is the fallback when the Vector API isn't available. The JIT can still unroll these loops and sometimes
+ * vectorize them on its own, but only for the simplest ones.
+ *
+ */
+
+class ScalarColumnKernel implements ColumnKernel {
+
+	// columns method
+	public void columns(CalculatorEngine.Key key, double[] first, double[] second, double[] answers, int length) {
+		switch (key) {   // - The switch is outside of the loops so each loop does only one thing.
+		case DIVIDE:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] / second[i];
+			}
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] * second[i];
+			}
+			break;
+		case ADD:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] + second[i];
+			}
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] - second[i];
+			}
+			break;
+		default:
+			scalar(key, first, 0, answers, length);   // - SQUARE and SQRT don't have a second number.
+			break;
+		}
+	}
+
+
+	// scalar method
+	public void scalar(CalculatorEngine.Key key, double[] first, double second, double[] answers, int length) {
+		switch (key) {
+		case DIVIDE:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] / second;
+			}
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] * second;
+			}
+			break;
+		case ADD:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] + second;
+			}
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] - second;
+			}
+			break;
+		case SQUARE:
+			for (int i = 0; i < length; i++) {
+				answers[i] = first[i] * first[i];   // - The correctly rounded square, same as Math.pow(x, 2).
+			}
+			break;
+		case SQRT:
+			for (int i = 0; i < length; i++) {
+				answers[i] = Math.sqrt(first[i]);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException(key + " isn't an operation");
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ *
+ * Records the keys of a calculator session into a small file, so the session can be replayed later without the window
+ * (SessionRecording), like in the benchmarks.
+ *
+ * The file starts with "CKEY" and a version byte. Each event after that is one byte for the key (its ordinal),
+ * for an operator a plug-in added (OPERATOR plus its index in OperatorRegistry), or for undo or redo, followed by the milliseconds since the event before it, 7 bits to a byte: one byte up to 127 ms
+ * and two up to 16 seconds, so most keys take two or three bytes. Events go into a buffer, and the file is only written
+ * when the buffer is full or the recorder is closed.
+ *
+ * If the file can't be written, recording stops, but the calculator doesn't.
+ *
+ */
+
+public class SessionRecorder implements AutoCloseable {
+
+	// event codes
+	static final int UNDO = 0x40;   // - Key ordinals are below this.
+	static final int REDO = 0x41;
+	static final int OPERATOR = 0x80;   // - Plus the operator's index, which is below OperatorRegistry.MAX_OPERATORS.
+
+
+	// fields
+	static final byte[] MAGIC = {'C', 'K', 'E', 'Y'};
+	static final int VERSION = 1;
+
+	private final OutputStream out;
+	private long lastTime;   // - System.nanoTime() of the last event.
+	private boolean stopped;   // - Set when the file couldn't be written, or the recorder was closed.
+
+
+	// constructor
+	public SessionRecorder(Path path) throws IOException {
+		out = new BufferedOutputStream(Files.newOutputStream(path));
+		out.write(MAGIC);
+		out.write(VERSION);
+		lastTime = System.nanoTime();
+	}
+
+
+	// record methods
+	public void key(CalculatorEngine.Key key) {
+		record(key.ordinal());
+	}
+
+	public void operator(CalculatorOperator operator) {   // - Built-in operators are recorded as their keys, with key().
+		record(OPERATOR | OperatorRegistry.indexOf(operator));
+	}
+
+	public void undo() {
+		record(UNDO);
+	}
+
+	public void redo() {
+		record(REDO);
+	}
+
+	private synchronized void record(int code) {   // - Synchronized only because close() can be called from a shutdown hook.
+		if (stopped) {
+			return;
+		}
+		long now = System.nanoTime();
+		long delay = Math.min((now - lastTime) / 1_000_000, Integer.MAX_VALUE);
+		lastTime = now;
+		try {
+			out.write(code);
+			while (delay >= 0x80) {   // - The low 7 bits first, with the top bit set when more bytes follow.
+				out.write((int) (delay & 0x7F) | 0x80);
+				delay >>>= 7;
+			}
+			out.write((int) delay);
+		}
+		catch (IOException e) {
+			stopped = true;
+		}
+	}
+
+
+	// close method
+	public synchronized void close() throws IOException {   // - Writes out what's still in the buffer.
+		if (!stopped) {
+			stopped = true;
+			out.close();
+		}
+	}
+
+}
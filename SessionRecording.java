@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ *
+ * A calculator session recorded by SessionRecorder, that can be replayed on a CalculatorEngine without the window.
+ *
+ * The events are read into two arrays once, the codes and the delays, so replaying a session only presses keys and
+ * creates nothing of its own. The delays are kept so the length of the session can be known, but replay() doesn't wait
+ * for them: it replays the keys as fast as the engine can take them.
+ *
+ * Operators that plug-ins added are recorded by their index in OperatorRegistry, so a session that uses them has to be
+ * replayed with the same plug-ins on the class path.
+ *
+ * A recording can also be made from typed text, like a line in batch mode, for sessions that weren't recorded.
+ * Backspace, Escape, Ctrl+Z and Ctrl+Y are typed as their control chars.
+ *
+ * To replay a recording and print what the display would show:
+ *   java Calculator --replay session.ckey
+ *
+ */
+
+public final class SessionRecording {
+
+	// fields
+	private static final CalculatorEngine.Key[] KEYS = CalculatorEngine.Key.values();
+
+	private final byte[] codes;   // - A key ordinal, SessionRecorder.OPERATOR plus an operator's index, or SessionRecorder.UNDO or REDO.
+	private final int[] delays;   // - Milliseconds since the event before.
+
+
+	// constructors
+	private SessionRecording(byte[] codes, int[] delays) {
+		this.codes = codes;
+		this.delays = delays;
+	}
+
+	public static SessionRecording read(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		int header = SessionRecorder.MAGIC.length;
+		if (bytes.length <= header || !Arrays.equals(bytes, 0, header, SessionRecorder.MAGIC, 0, header)) {
+			throw new IOException("Not a session recording: " + path);
+		}
+		if (bytes[header] != SessionRecorder.VERSION) {
+			throw new IOException("Unknown session recording version " + bytes[header] + ": " + path);
+		}
+
+		byte[] codes = new byte[bytes.length / 2];   // - Every event has at least two bytes.
+		int[] delays = new int[codes.length];
+		int count = 0;
+		int i = header + 1;
+		while (i < bytes.length) {
+			int code = bytes[i++] & 0xFF;
+			if (code >= SessionRecorder.OPERATOR && code - SessionRecorder.OPERATOR >= OperatorRegistry.size()) {
+				throw new IOException("Unknown operator " + (code - SessionRecorder.OPERATOR) + " at byte " + (i - 1) + ", recorded with a plug-in that isn't loaded: " + path);
+			}
+			if (code < SessionRecorder.OPERATOR && code >= KEYS.length && code != SessionRecorder.UNDO && code != SessionRecorder.REDO) {
+				throw new IOException("Unknown event " + code + " at byte " + (i - 1) + ": " + path);
+			}
+			long delay = 0;
+			int shift = 0;
+			int b;
+			do {
+				if (i == bytes.length) {
+					throw new IOException("Session recording ends in the middle of an event: " + path);
+				}
+				b = bytes[i++];
+				delay |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0 && shift < 35);
+			codes[count] = (byte) code;
+			delays[count] = (int) Math.min(delay, Integer.MAX_VALUE);
+			count++;
+		}
+		return new SessionRecording(Arrays.copyOf(codes, count), Arrays.copyOf(delays, count));
+	}
+
+	public static SessionRecording typed(CharSequence text) {   // - Chars that aren't keys or operators, like spaces and newlines, are skipped. There are no delays.
+		byte[] codes = new byte[text.length()];
+		int count = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			CalculatorEngine.Key key = CalculatorEngine.Key.forChar(c);
+			CalculatorOperator operator = key == null ? OperatorRegistry.forChar(c) : null;
+			if (key != null) {
+				codes[count++] = (byte) key.ordinal();
+			}
+			else if (operator != null) {
+				codes[count++] = (byte) (SessionRecorder.OPERATOR | OperatorRegistry.indexOf(operator));
+			}
+			else if (c == '\b') {   // - The control chars of the keys the window binds: Backspace, Escape, Ctrl+Z and Ctrl+Y.
+				codes[count++] = (byte) CalculatorEngine.Key.DELETE.ordinal();
+			}
+			else if (c == '\u001B') {
+				codes[count++] = (byte) CalculatorEngine.Key.CLEAR.ordinal();
+			}
+			else if (c == '\u001A') {
+				codes[count++] = SessionRecorder.UNDO;
+			}
+			else if (c == '\u0019') {
+				codes[count++] = SessionRecorder.REDO;
+			}
+		}
+		return new SessionRecording(Arrays.copyOf(codes, count), new int[count]);
+	}
+
+
+	// replay method
+	public void replay(CalculatorEngine engine) {   // - Undo and redo only do something if the engine has undo enabled, like in the window.
+		for (byte b : codes) {
+			int code = b & 0xFF;
+			if (code >= SessionRecorder.OPERATOR) {
+				engine.press(OperatorRegistry.get(code - SessionRecorder.OPERATOR));
+			}
+			else if (code == SessionRecorder.UNDO) {
+				engine.undo();
+			}
+			else if (code == SessionRecorder.REDO) {
+				engine.redo();
+			}
+			else {
+				engine.press(KEYS[code]);
+			}
+		}
+	}
+
+
+	// getters
+	public int size() {   // - The number of events.
+		return codes.length;
+	}
+
+	public long getDuration() {   // - Milliseconds from the start of the recording to the last event.
+		long duration = 0;
+		for (int delay : delays) {
+			duration += delay;
+		}
+		return duration;
+	}
+
+
+	// main method
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: java Calculator --replay session.ckey");
+			System.exit(2);
+		}
+		SessionRecording recording = read(Paths.get(args[0]));
+		CalculatorEngine engine = new CalculatorEngine();
+		engine.setUndoEnabled(true);
+		long start = System.nanoTime();
+		recording.replay(engine);
+		long time = System.nanoTime() - start;
+		System.out.println(recording.size() + " events recorded in " + recording.getDuration() / 1000.0 + " s, replayed in " + time / 1000 + " us");
+		System.out.println("previous: " + engine.getPreviousText());
+		System.out.println("main:     " + engine.getMainText());
+	}
+
+}
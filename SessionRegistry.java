@@ -0,0 +1,103 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * Keeps many CalculatorSessions in one program, looked up by their id, so each user of a server has their own calculator.
+ *
+ * The sessions are in a ConcurrentHashMap, so looking up a session never takes a lock, and creating one only locks
+ * one bin of the map. Threads working with different sessions don't wait for each other.
+ *
+ * Sessions that haven't been used for longer than the idle timeout are removed by evictIdle(), which a server calls
+ * now and then. When there are already maxSessions sessions, idle ones are removed before a new one is made,
+ * and if none are idle the new session is refused. A session that's removed while it's being used keeps working
+ * for that request, and the next request with its id gets a new session.
+ *
+ * Looking for idle sessions means going through all of them, so a full registry doesn't do it for every new session.
+ * Each time evictIdle() goes through them, it removes every idle one at once and notes when the oldest one left
+ * could be idle. Until then no session can be, so new sessions are refused straight away without looking. It also
+ * looks at most SCANS_PER_TIMEOUT times per idle timeout, so asking for sessions faster doesn't make it look more
+ * often. In return, an idle session can be kept up to 1/64 of the timeout longer.
+ *
+ */
+
+public class SessionRegistry {
+
+	// fields
+	static final int MAX_TEXT_LENGTH = 1000;   // - Per session. Keeps a session's memory to a few kilobytes.
+	private static final int MAX_ID_LENGTH = 64;
+	private static final int SCANS_PER_TIMEOUT = 64;   // - The most times a full registry goes through its sessions in one idle timeout.
+
+	private final ConcurrentHashMap<String, CalculatorSession> sessions = new ConcurrentHashMap<String, CalculatorSession>();
+	private final int maxSessions;
+	private final long idleTimeout;   // - Nanoseconds.
+	private volatile long nextEviction = System.nanoTime();   // - System.nanoTime() before which no session can be idle, so a full registry doesn't look.
+	private volatile CalculatorMetrics metrics;   // - Shared by the engines of new sessions. Null if they aren't counted.
+
+
+	// constructor
+	public SessionRegistry(int maxSessions, long idleTimeoutMillis) {
+		this.maxSessions = maxSessions;
+		this.idleTimeout = idleTimeoutMillis * 1_000_000L;
+	}
+
+
+	// get method
+	public CalculatorSession get(String id) {   // - Returns the session with this id, making it if there isn't one. Throws IllegalStateException if there's no room.
+		CalculatorSession session = sessions.get(id);
+		if (session != null) {
+			session.touch();
+			return session;
+		}
+		if (id.isEmpty() || id.length() > MAX_ID_LENGTH) {
+			throw new IllegalArgumentException("Session ids have 1 to " + MAX_ID_LENGTH + " chars");
+		}
+		if (sessions.size() >= maxSessions && (System.nanoTime() - nextEviction < 0 || evictIdle() == 0)) {   // - Many threads can get here at once, so there can be a few more than maxSessions for a moment.
+			throw new IllegalStateException("Too many sessions");
+		}
+		return sessions.computeIfAbsent(id, newId -> new CalculatorSession(newId, MAX_TEXT_LENGTH, metrics));
+	}
+
+
+	// remove method
+	public boolean remove(String id) {
+		return sessions.remove(id) != null;
+	}
+
+
+	// evict idle method
+	public int evictIdle() {   // - Removes the sessions that haven't been used for the idle timeout. Returns how many were removed.
+		long now = System.nanoTime();
+		long oldest = now;   // - lastUsed of the oldest session that's kept. Sessions made or used after this started are newer.
+		int evicted = 0;
+		for (CalculatorSession session : sessions.values()) {   // - The iterator doesn't lock the map or fail when it changes.
+			long lastUsed = session.getLastUsed();
+			if (now - lastUsed > idleTimeout) {
+				if (sessions.remove(session.getId(), session)) {
+					evicted++;
+				}
+			}
+			else if (lastUsed - oldest < 0) {
+				oldest = lastUsed;
+			}
+		}
+		long soonest = oldest + idleTimeout;   // - When the oldest session left could be idle.
+		long minimum = now + idleTimeout / SCANS_PER_TIMEOUT;
+		nextEviction = soonest - minimum > 0 ? soonest : minimum;
+		return evicted;
+	}
+
+
+	// getters
+	public int size() {
+		return sessions.size();
+	}
+
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	public void setMetrics(CalculatorMetrics metrics) {   // - Only sessions made after this are counted.
+		this.metrics = metrics;
+	}
+
+}
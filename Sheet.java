@@ -0,0 +1,357 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ *
+ * Named values and formulas that use them, like a spreadsheet: "price = 12.5", "count = 3", "total = price * count".
+ *
+ * Every name is a cell with an id, and everything about the cells is kept in arrays indexed by id: the value, the
+ * compiled formula (an Expression), the ids of the names the formula uses (its inputs), and the ids of the formulas
+ * that use it (its dependents). A formula is evaluated straight from the values array, with its inputs as the slots.
+ *
+ * When a cell changes, only the formulas downstream of it are calculated again, each of them once and after all of its
+ * inputs. A breadth-first search through the dependents finds the cells downstream, and then they're calculated in
+ * topological order (Kahn's algorithm), by counting how many of each cell's inputs haven't been calculated yet.
+ * Changing a cell costs as much as what depends on it, however many other formulas the sheet has.
+ *
+ * The same search finds cycles. A new formula makes a cycle only if one of its inputs is its own cell or downstream
+ * of it, so the search stops as soon as it reaches one, and the way it came is the cycle. The formula isn't set then,
+ * and the sheet stays as it was.
+ *
+ * A name that's used before it's set is an empty cell, which isn't a number until it's set. Nothing is recursive,
+ * so a chain of a million formulas doesn't overflow the stack. A sheet isn't thread-safe.
+ *
+ * From the command line, each line is "name = formula", "name = " to clear a cell, or "name" to show its value:
+ *   java Calculator --sheet [file]
+ *
+ */
+
+public class Sheet {
+
+	// fields
+	private static final int[] NO_CELLS = new int[0];
+	private static final int CYCLE_NAMES_SHOWN = 8;   // - A long cycle is shortened in the error message.
+
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private int size;   // - Number of cells. Ids go from 0 to size - 1.
+	private String[] names = new String[16];
+	private double[] values = new double[16];
+	private Expression[] formulas = new Expression[16];   // - Null for a cell that's a plain value, or empty.
+	private boolean[] defined = new boolean[16];   // - False for a cell that's only used by formulas, or was cleared.
+	private int[][] inputs = new int[16][];   // - Ids of the formula's variables, in the same order. The slots when it's evaluated.
+	private int[][] inputPositions = new int[16][];   // - Where the cell is in each input's dependents, so it can be taken out without searching.
+	private int[][] dependents = new int[16][];   // - Ids of the formulas that use the cell. Only the first dependentCounts[id] are used.
+	private int[] dependentCounts = new int[16];
+
+	private final ExpressionCompiler compiler = new ExpressionCompiler();
+	private double[] stack = new double[16];   // - For evaluating formulas. Grown for formulas that need more.
+
+	private int epoch;   // - Counts searches, so marks never have to be cleared.
+	private int[] marks = new int[16];   // - marks[id] == epoch if the search has found the cell.
+	private int[] targets = new int[16];   // - targets[id] == epoch if the cell is an input of the formula being set.
+	private int[] found = new int[16];   // - The cells the search found, in the order it found them.
+	private int[] parents = new int[16];   // - The cell each one was found from.
+	private int[] waiting = new int[16];   // - How many of each found cell's inputs haven't been calculated yet.
+	private int foundCount;
+	private int cycleEnd = -1;   // - The input the last search stopped at because it was downstream. -1 if it didn't.
+	private int calculated;   // - Formulas calculated by the last change.
+
+
+	// set methods
+	public double set(String name, String formula) {   // - Returns the cell's new value. Throws IllegalArgumentException for a bad name or formula, or a cycle.
+		checkName(name);
+		Expression expression = compiler.compile(formula);
+		Integer existing = ids.get(name);
+		epoch++;
+		for (int i = 0; i < expression.getVariableCount(); i++) {
+			Integer input = ids.get(expression.getVariable(i));
+			if (input != null) {   // - New names can't be downstream of anything yet.
+				targets[input] = epoch;
+			}
+			else if (expression.getVariable(i).equals(name)) {
+				throw new IllegalArgumentException("Cycle: " + name + " -> " + name);
+			}
+		}
+		if (existing != null) {
+			search(existing, true);
+			if (cycleEnd >= 0) {
+				throw new IllegalArgumentException("Cycle: " + cyclePath(existing));
+			}
+		}
+
+		int id = id(name);
+		int[] newInputs = new int[expression.getVariableCount()];
+		for (int i = 0; i < newInputs.length; i++) {
+			newInputs[i] = id(expression.getVariable(i));
+		}
+		setInputs(id, newInputs);
+		formulas[id] = expression;
+		defined[id] = true;
+		if (stack.length < expression.getMaxStack()) {
+			stack = new double[expression.getMaxStack()];
+		}
+		if (existing == null) {   // - Nothing uses a new cell yet, so there's nothing to search.
+			found[0] = id;
+			foundCount = 1;
+		}
+		calculateFound();
+		return values[id];
+	}
+
+	public void set(String name, double value) {   // - A plain value, like an answer from the calculator.
+		checkName(name);
+		int id = id(name);
+		setInputs(id, NO_CELLS);
+		formulas[id] = null;
+		defined[id] = true;
+		values[id] = value;
+		changed(id);
+	}
+
+	public void clear(String name) {   // - Empties the cell. Formulas that use it stop being numbers until it's set again.
+		Integer id = ids.get(name);
+		if (id != null && defined[id]) {
+			setInputs(id, NO_CELLS);
+			formulas[id] = null;
+			defined[id] = false;
+			values[id] = Double.NaN;
+			changed(id);
+		}
+	}
+
+	private void changed(int id) {   // - Calculates everything downstream of a cell whose value was set.
+		epoch++;
+		search(id, false);
+		calculateFound();
+	}
+
+
+	// input methods
+	private void setInputs(int id, int[] newInputs) {   // - Takes the cell out of its old inputs' dependents and puts it in the new ones'.
+		int[] oldInputs = inputs[id];
+		for (int i = 0; i < oldInputs.length; i++) {
+			int input = oldInputs[i];
+			int position = inputPositions[id][i];
+			int last = --dependentCounts[input];
+			int moved = dependents[input][last];   // - The last dependent moves into the hole.
+			dependents[input][position] = moved;
+			if (moved != id) {
+				int[] movedInputs = inputs[moved];
+				for (int j = 0; j < movedInputs.length; j++) {
+					if (movedInputs[j] == input) {
+						inputPositions[moved][j] = position;
+						break;
+					}
+				}
+			}
+		}
+		int[] positions = new int[newInputs.length];
+		for (int i = 0; i < newInputs.length; i++) {
+			int input = newInputs[i];
+			if (dependentCounts[input] == dependents[input].length) {
+				dependents[input] = Arrays.copyOf(dependents[input], Math.max(4, dependentCounts[input] * 2));
+			}
+			positions[i] = dependentCounts[input];
+			dependents[input][dependentCounts[input]++] = id;
+		}
+		inputs[id] = newInputs;
+		inputPositions[id] = positions;
+	}
+
+
+	// search method
+	private void search(int start, boolean findCycle) {   // - Finds start and every cell downstream of it. With findCycle, stops at the first target.
+		found[0] = start;
+		parents[start] = -1;
+		marks[start] = epoch;
+		foundCount = 1;
+		cycleEnd = -1;
+		for (int next = 0; next < foundCount; next++) {
+			int cell = found[next];
+			if (findCycle && targets[cell] == epoch) {
+				cycleEnd = cell;
+				return;
+			}
+			int[] cellDependents = dependents[cell];
+			for (int i = 0; i < dependentCounts[cell]; i++) {
+				int dependent = cellDependents[i];
+				if (marks[dependent] != epoch) {
+					marks[dependent] = epoch;
+					parents[dependent] = cell;
+					found[foundCount++] = dependent;
+				}
+			}
+		}
+	}
+
+	private String cyclePath(int start) {   // - Like "a -> b -> c -> a", where c is an input of a's new formula.
+		int length = 0;
+		for (int cell = cycleEnd; cell != -1; cell = parents[cell]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int cell = cycleEnd, i = length - 1; cell != -1; cell = parents[cell], i--) {
+			path[i] = cell;
+		}
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i == CYCLE_NAMES_SHOWN - 1 && length > CYCLE_NAMES_SHOWN) {
+				text.append("... ").append(length - CYCLE_NAMES_SHOWN).append(" more -> ");
+				i = length - 1;
+			}
+			text.append(names[path[i]]).append(" -> ");
+		}
+		return text.append(names[start]).toString();
+	}
+
+
+	// calculate method
+	private void calculateFound() {   // - Calculates the found cells in topological order. found[0] is the one that changed.
+		for (int i = 0; i < foundCount; i++) {
+			waiting[found[i]] = 0;
+		}
+		for (int i = 0; i < foundCount; i++) {   // - Only the found cells' inputs that were found too have to wait. The rest didn't change.
+			int cell = found[i];
+			for (int j = 0; j < dependentCounts[cell]; j++) {
+				waiting[dependents[cell][j]]++;
+			}
+		}
+		int[] ready = parents;   // - The parents aren't needed anymore, so their array is reused as the queue of cells whose inputs are all calculated.
+		int head = 0;
+		int tail = 0;
+		ready[tail++] = found[0];
+		calculated = 0;
+		while (head < tail) {
+			int cell = ready[head++];
+			if (formulas[cell] != null) {
+				values[cell] = formulas[cell].evaluate(stack, values, inputs[cell]);
+				calculated++;
+			}
+			for (int j = 0; j < dependentCounts[cell]; j++) {
+				int dependent = dependents[cell][j];
+				if (--waiting[dependent] == 0) {
+					ready[tail++] = dependent;
+				}
+			}
+		}
+	}
+
+
+	// id method
+	private int id(String name) {   // - The cell of a name, made empty if there isn't one yet.
+		Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		if (size == names.length) {
+			grow();
+		}
+		names[size] = name;
+		values[size] = Double.NaN;
+		inputs[size] = NO_CELLS;
+		inputPositions[size] = NO_CELLS;
+		dependents[size] = NO_CELLS;
+		ids.put(name, size);
+		return size++;
+	}
+
+	private void grow() {
+		int capacity = names.length * 2;
+		names = Arrays.copyOf(names, capacity);
+		values = Arrays.copyOf(values, capacity);
+		formulas = Arrays.copyOf(formulas, capacity);
+		defined = Arrays.copyOf(defined, capacity);
+		inputs = Arrays.copyOf(inputs, capacity);
+		inputPositions = Arrays.copyOf(inputPositions, capacity);
+		dependents = Arrays.copyOf(dependents, capacity);
+		dependentCounts = Arrays.copyOf(dependentCounts, capacity);
+		marks = Arrays.copyOf(marks, capacity);
+		targets = Arrays.copyOf(targets, capacity);
+		found = Arrays.copyOf(found, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		waiting = Arrays.copyOf(waiting, capacity);
+	}
+
+	private static void checkName(String name) {
+		if (!ExpressionCompiler.isName(name)) {
+			throw new IllegalArgumentException("\"" + name + "\" can't be a name");
+		}
+	}
+
+
+	// getters
+	public double get(String name) {   // - Not a number if the name isn't set.
+		Integer id = ids.get(name);
+		return id == null ? Double.NaN : values[id];
+	}
+
+	public boolean isSet(String name) {
+		Integer id = ids.get(name);
+		return id != null && defined[id];
+	}
+
+	public String getFormula(String name) {   // - Null if the cell is a plain value or empty.
+		Integer id = ids.get(name);
+		return id == null || formulas[id] == null ? null : formulas[id].getSource();
+	}
+
+	public int getCalculated() {   // - How many formulas the last change calculated.
+		return calculated;
+	}
+
+	public int size() {   // - Cells, counting empty ones that formulas use.
+		return size;
+	}
+
+
+	// main method
+	public static void main(String[] args) throws IOException {
+		if (args.length > 1) {
+			System.err.println("Usage: java Calculator --sheet [file]");
+			System.exit(2);
+		}
+		BufferedReader in = args.length == 1 ? Files.newBufferedReader(Paths.get(args[0])) : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		Sheet sheet = new Sheet();
+		AnswerFormatter formatter = new AnswerFormatter();
+		String line;
+		while ((line = in.readLine()) != null) {
+			int equals = line.indexOf('=');
+			String name = (equals < 0 ? line : line.substring(0, equals)).trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+			try {
+				if (equals < 0) {   // - Show a value.
+					formatter.format(sheet.get(name));
+					System.out.println(name + " = " + (sheet.isSet(name) ? formatter : "not set"));
+				}
+				else if (line.substring(equals + 1).trim().isEmpty()) {
+					sheet.clear(name);
+					System.out.println(name + " cleared" + calculatedText(sheet, 0));
+				}
+				else {
+					formatter.format(sheet.set(name, line.substring(equals + 1)));
+					System.out.println(name + " = " + formatter + calculatedText(sheet, 1));
+				}
+			}
+			catch (IllegalArgumentException e) {
+				System.out.println("Error: " + e.getMessage());
+			}
+		}
+	}
+
+	private static String calculatedText(Sheet sheet, int shownAfter) {   // - The number of formulas calculated, when there were more than the one that was set.
+		int calculated = sheet.getCalculated();
+		if (calculated <= shownAfter) {
+			return "";
+		}
+		return ", " + calculated + (calculated == 1 ? " formula" : " formulas") + " calculated";
+	}
+
+}
@@ -0,0 +1,61 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ *
+ * Measures how long the calculator takes to start, so a change that makes startup slower shows up.
+ *
+ * Each step of startup is marked with the time it happened. Once the window has been painted and is interactive,
+ * it prints how long after the start of the JVM each step was, and runs whenDone. The JVM's start time comes from
+ * the management classes, which take a while to load themselves, so they are only loaded after everything is measured.
+ *
+ *   main          Calculator.main started, after the JVM loaded and started the program.
+ *   first paint   The window was painted for the first time.
+ *   interactive   Every button and key works.
+ *
+ */
+
+public class StartupTimer {
+
+	// fields
+	private long main;   // - Times are System.currentTimeMillis(), the same clock as the JVM's start time. Zero until they happen.
+	private long firstPaint;
+	private long interactive;
+	private final Runnable whenDone;   // - Run after the report, like exiting for --exit-after-startup.
+
+
+	// constructor
+	public StartupTimer(Runnable whenDone) {
+		this.whenDone = whenDone;
+	}
+
+
+	// mark methods
+	public void markMain() {
+		main = System.currentTimeMillis();
+	}
+
+	public void markFirstPaint() {   // - Called on every paint, but only the first one counts.
+		if (firstPaint == 0) {
+			firstPaint = System.currentTimeMillis();
+			reportIfDone();
+		}
+	}
+
+	public void markInteractive() {
+		interactive = System.currentTimeMillis();
+		reportIfDone();
+	}
+
+
+	// report method
+	private void reportIfDone() {   // - The window can be painted before or after it's interactive, so whichever is last reports.
+		if (firstPaint == 0 || interactive == 0) {
+			return;
+		}
+		long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.printf("Startup: main %d ms, first paint %d ms, interactive %d ms after the JVM started%n",
+				main - jvmStart, firstPaint - jvmStart, interactive - jvmStart);
+		whenDone.run();
+	}
+
+}
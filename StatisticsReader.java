@@ -0,0 +1,256 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ *
+ * Count, sum, mean, min, max, variance and percentiles of a file of numbers, or of numbers typed or piped in,
+ * without opening the calculator window. The numbers are added to a StreamStatistics, so they aren't kept.
+ *
+ * Numbers are separated by new lines, spaces, tabs, commas or semicolons. Anything that isn't a number, like the
+ * header of a column, is skipped and counted. Numbers with up to 18 digits are parsed straight from the bytes, with
+ * NumberAccumulator's fast path, so they don't create a String. Longer ones, and ones like "1.5E10", use Double.parseDouble.
+ *
+ * A file is memory-mapped in chunks that end at the end of a line, like in BatchEvaluator. With more than one thread,
+ * the chunks are read at the same time by a ForkJoinPool, each thread into its own StreamStatistics, and they're added
+ * together at the end. The order doesn't matter, so no chunk waits for another, and memory doesn't grow with the file.
+ *
+ * From standard input, a line with just "=" on it prints the statistics so far, so numbers can be typed in one at a time.
+ *
+ * Usage: java Calculator --stats [--threads n] [file]
+ * The number of threads is the number of processors by default.
+ *
+ */
+
+public class StatisticsReader {
+
+	// fields
+	private final StreamStatistics statistics = new StreamStatistics();
+	private long skipped;   // - Words that weren't numbers.
+	private byte[] word = new byte[64];   // - Reused to copy a number that has to be parsed as a String.
+
+
+	// main method
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int first = 0;
+		if (args.length >= 2 && args[0].equals("--threads")) {
+			threads = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (args.length - first > 1 || threads < 1) {
+			System.err.println("Usage: java Calculator --stats [--threads n] [file]");
+			return;
+		}
+		if (args.length == first) {
+			readInput(System.out);
+			return;
+		}
+
+		Path input = Paths.get(args[first]);
+		long start = System.nanoTime();
+		StatisticsReader reader = threads == 1 ? read(input) : readParallel(input, threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long numbers = reader.statistics.getCount() + reader.statistics.getNotNumbers();
+		reader.print(System.out);
+		System.out.printf("Read %d numbers in %.3f s (%.0f numbers/sec) with %d thread(s)%n", numbers, seconds, numbers / seconds, threads);
+	}
+
+
+	// read methods
+	public static StatisticsReader read(Path input) throws IOException {
+		StatisticsReader reader = new StatisticsReader();
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				long end = BatchEvaluator.chunkEnd(in, position, size, BatchEvaluator.CHUNK_SIZE);
+				reader.readChunk(in.map(FileChannel.MapMode.READ_ONLY, position, end - position));
+				position = end;
+			}
+		}
+		return reader;
+	}
+
+	public static StatisticsReader readParallel(Path input, int parallelism) throws IOException {   // - Returns one reader with every thread's statistics added together.
+		ConcurrentLinkedQueue<StatisticsReader> readers = new ConcurrentLinkedQueue<StatisticsReader>();
+		ThreadLocal<StatisticsReader> threadReaders = ThreadLocal.withInitial(() -> {
+			StatisticsReader reader = new StatisticsReader();
+			readers.add(reader);
+			return reader;
+		});
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+			long size = in.size();
+			long chunkSize = Math.max(BatchEvaluator.MIN_PARALLEL_CHUNK_SIZE, Math.min(BatchEvaluator.CHUNK_SIZE, size / (parallelism * 4L) + 1));   // - At least four chunks per thread so they finish at about the same time.
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			long position = 0;
+			while (position < size) {
+				long end = BatchEvaluator.chunkEnd(in, position, size, chunkSize);
+				MappedByteBuffer chunk = in.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+				tasks.add(pool.submit(() -> threadReaders.get().readChunk(chunk)));
+				position = end;
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+		StatisticsReader total = new StatisticsReader();
+		for (StatisticsReader reader : readers) {
+			total.add(reader);
+		}
+		return total;
+	}
+
+	private static void readInput(PrintStream out) throws IOException {   // - Reads standard input until it ends, printing the statistics at every "=" and at the end.
+		StatisticsReader reader = new StatisticsReader();
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.trim().equals("=")) {
+				reader.print(out);
+			}
+			else {
+				reader.readChunk(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+			}
+		}
+		reader.print(out);
+	}
+
+
+	// read chunk method
+	void readChunk(ByteBuffer chunk) {   // - Adds every number in the chunk.
+		int limit = chunk.limit();
+		int wordStart = -1;
+		for (int i = 0; i < limit; i++) {
+			byte b = chunk.get(i);
+			if (b == '\n' || b == '\r' || b == ' ' || b == '\t' || b == ',' || b == ';') {
+				if (wordStart >= 0) {
+					addNumber(chunk, wordStart, i);
+					wordStart = -1;
+				}
+			}
+			else if (wordStart < 0) {
+				wordStart = i;
+			}
+		}
+		if (wordStart >= 0) {   // - The last number of the file doesn't need a new line.
+			addNumber(chunk, wordStart, limit);
+		}
+	}
+
+
+	// add number method
+	private void addNumber(ByteBuffer chunk, int start, int end) {
+		int i = start;
+		boolean negative = chunk.get(i) == '-';
+		if (negative || chunk.get(i) == '+') {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean decimalPoint = false;
+		boolean plain = true;   // - False if it isn't just up to NumberAccumulator.MAX_DIGITS digits and a decimal point.
+		for (; i < end && plain; i++) {
+			byte b = chunk.get(i);
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (decimalPoint) {
+					fractionDigits++;
+				}
+				plain = digits <= NumberAccumulator.MAX_DIGITS;
+			}
+			else if (b == '.' && !decimalPoint) {
+				decimalPoint = true;
+			}
+			else {
+				plain = false;
+			}
+		}
+		if (plain && digits > 0) {
+			double value = NumberAccumulator.exactDouble(mantissa, fractionDigits, negative);
+			if (!Double.isNaN(value)) {
+				statistics.add(value);
+				return;
+			}
+		}
+
+		int length = end - start;   // - Too many digits to be exact, or not just digits.
+		if (length > word.length) {
+			word = new byte[Math.max(length, word.length * 2)];
+		}
+		chunk.get(start, word, 0, length);
+		try {
+			statistics.add(Double.parseDouble(new String(word, 0, length, StandardCharsets.ISO_8859_1)));
+		}
+		catch (NumberFormatException e) {
+			skipped++;
+		}
+	}
+
+
+	// add method
+	public void add(StatisticsReader other) {
+		statistics.add(other.statistics);
+		skipped += other.skipped;
+	}
+
+
+	// print method
+	public void print(PrintStream out) {
+		AnswerFormatter formatter = new AnswerFormatter();
+		out.printf("%-16s %d%n", "count", statistics.getCount());
+		print(out, formatter, "sum", statistics.getSum());
+		print(out, formatter, "mean", statistics.getMean());
+		print(out, formatter, "min", statistics.getMin());
+		print(out, formatter, "max", statistics.getMax());
+		print(out, formatter, "variance", statistics.getVariance());
+		print(out, formatter, "std dev", statistics.getStandardDeviation());
+		print(out, formatter, "sample variance", statistics.getSampleVariance());
+		print(out, formatter, "sample std dev", statistics.getSampleStandardDeviation());
+		print(out, formatter, "p50", statistics.getPercentile(0.5));
+		print(out, formatter, "p90", statistics.getPercentile(0.9));
+		print(out, formatter, "p99", statistics.getPercentile(0.99));
+		print(out, formatter, "p999", statistics.getPercentile(0.999));
+		if (statistics.getNotNumbers() > 0) {
+			out.printf("%-16s %d%n", "not a number", statistics.getNotNumbers());
+		}
+		if (skipped > 0) {
+			out.printf("%-16s %d%n", "skipped", skipped);
+		}
+	}
+
+	private static void print(PrintStream out, AnswerFormatter formatter, String name, double value) {
+		formatter.format(value);
+		out.printf("%-16s %s%n", name, formatter);
+	}
+
+
+	// getters
+	public StreamStatistics getStatistics() {
+		return statistics;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+}
@@ -0,0 +1,270 @@
+/**
+ *
+ * Count, sum, mean, min, max, variance and percentiles of a stream of numbers, without keeping the numbers.
+ *
+ * Adding a number only updates a few doubles and one bucket count, so billions of numbers take the same memory as ten.
+ * The sum is compensated (Neumaier's version of Kahan summation): the rounding error of each addition is added up
+ * separately and put back at the end, so the sum of a billion numbers is as accurate as the sum of a few.
+ * The variance uses Welford's method, which updates the mean and the sum of squared differences from it one number
+ * at a time, instead of the sum of squares, which loses every digit when the numbers are big and close together.
+ * The numbers go into it as differences from the first one, which are exact when they're close to it, so numbers
+ * like a billion and a fraction have a variance that's as accurate as numbers near zero.
+ *
+ * Percentiles come from a sketch: log-linear buckets like LatencyHistogram's, but for doubles. A positive double's bits
+ * go up with its value, so the exponent and the first SUB_BUCKET_BITS bits of the mantissa are already its bucket,
+ * with no logarithm. Every percentile is within 0.4% of a number that was really added (relative error), for numbers
+ * of any size. Negative numbers have their own buckets. Only the range of buckets that's been used is kept, so numbers
+ * from 1 to a million take about 2,600 buckets, and the most there can ever be is 2^18 for each sign.
+ *
+ * Two statistics can be added together with add(StreamStatistics), and the answer is the same as if all the numbers
+ * had been added to one, apart from rounding in the last few digits. The compensated sums are added like any other
+ * numbers, and the variances are combined with Chan's formula.
+ * So a big input can be split between threads, each with its own statistics, and added together at the end.
+ *
+ * NaN isn't a number, so it's counted separately and not added. StreamStatistics isn't thread-safe.
+ *
+ */
+
+public class StreamStatistics {
+
+	// fields
+	private static final int SUB_BUCKET_BITS = 7;   // - Buckets for each power of two, as bits. A bucket is at most 2^-7 of its values wide.
+	private static final int SHIFT = 52 - SUB_BUCKET_BITS;   // - A double's bits shifted right by this are its bucket.
+	private static final int INFINITE_BUCKET = (int) (Double.doubleToRawLongBits(Double.POSITIVE_INFINITY) >>> SHIFT);
+
+	private long count;   // - Numbers added, not counting NaN.
+	private long notNumbers;
+	private double sum;
+	private double compensation;   // - The low-order bits that sum lost to rounding.
+	private double shift;   // - The first number. Welford's method gets each number minus this.
+	private double mean;   // - Welford's running mean, minus shift.
+	private double squares;   // - Welford's sum of squared differences from the mean.
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	private final Buckets positives = new Buckets();   // - Zero and the positive numbers.
+	private final Buckets negatives = new Buckets();   // - The negative numbers, by their absolute value.
+
+
+	// buckets class
+	private static final class Buckets {   // - Counts for the buckets from offset to offset + counts.length - 1. Grown when a number falls outside them.
+
+		private long[] counts = new long[0];
+		private int offset;
+		private long total;
+
+		void add(int bucket, long n) {
+			if (bucket < offset || bucket >= offset + counts.length) {
+				grow(bucket);
+			}
+			counts[bucket - offset] += n;
+			total += n;
+		}
+
+		private void grow(int bucket) {   // - At least doubles the range toward the bucket, so numbers of new sizes take amortized constant time.
+			int start = offset;
+			int end = offset + counts.length;
+			int room = Math.max(end - start, 32);
+			if (counts.length == 0) {
+				start = bucket;
+				end = bucket;
+			}
+			if (bucket < start || counts.length == 0) {
+				start = Math.max(0, bucket - room);
+			}
+			if (bucket >= end) {
+				end = Math.min(INFINITE_BUCKET + 1, bucket + 1 + room);
+			}
+			long[] newCounts = new long[end - start];
+			if (counts.length > 0) {
+				System.arraycopy(counts, 0, newCounts, offset - start, counts.length);
+			}
+			counts = newCounts;
+			offset = start;
+		}
+
+		void add(Buckets other) {
+			for (int i = 0; i < other.counts.length; i++) {
+				if (other.counts[i] != 0) {
+					add(other.offset + i, other.counts[i]);
+				}
+			}
+		}
+
+		void clear() {
+			counts = new long[0];
+			offset = 0;
+			total = 0;
+		}
+	}
+
+
+	// add methods
+	public void add(double value) {
+		if (value != value) {   // - NaN.
+			notNumbers++;
+			return;
+		}
+		count++;
+		addToSum(value);
+		if (count == 1) {
+			shift = value;
+		}
+		double shifted = value - shift;
+		double delta = shifted - mean;
+		mean += delta / count;
+		squares += delta * (shifted - mean);
+
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+		long bits = Double.doubleToRawLongBits(value);
+		int bucket = (int) ((bits & Long.MAX_VALUE) >>> SHIFT);   // - The sign bit is cleared, so the bucket is of the absolute value.
+		(bits < 0 ? negatives : positives).add(bucket, 1);
+	}
+
+	public void add(StreamStatistics other) {   // - Adds all of other's numbers to this, as if they had been added one at a time.
+		notNumbers += other.notNumbers;
+		if (other.count == 0) {
+			return;
+		}
+		if (count == 0) {
+			shift = other.shift;
+			mean = other.mean;
+			squares = other.squares;
+		}
+		else {   // - Chan's formula for combining two means and sums of squared differences.
+			double delta = (other.shift - shift) + other.mean - mean;   // - Each mean is from its own shift.
+			double total = (double) count + other.count;
+			mean += delta * (other.count / total);
+			squares += other.squares + delta * delta * ((double) count * other.count / total);
+		}
+		count += other.count;
+		addToSum(other.sum);
+		addToSum(other.compensation);
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		positives.add(other.positives);
+		negatives.add(other.negatives);
+	}
+
+	private void addToSum(double value) {   // - Neumaier's summation: whichever of the two is smaller lost its low bits to rounding.
+		double t = sum + value;
+		if (Math.abs(sum) >= Math.abs(value)) {
+			compensation += (sum - t) + value;
+		}
+		else {
+			compensation += (value - t) + sum;
+		}
+		sum = t;
+	}
+
+
+	// percentile method
+	public double getPercentile(double fraction) {   // - Like 0.99 for p99. Not a number if nothing was added.
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		if (rank <= negatives.total) {   // - The most negative numbers come first, so the negative buckets go from the biggest absolute value down.
+			long seen = 0;
+			for (int i = negatives.counts.length - 1; i >= 0; i--) {
+				seen += negatives.counts[i];
+				if (seen >= rank) {
+					return clamp(-bucketValue(negatives.offset + i));
+				}
+			}
+		}
+		long seen = negatives.total;
+		for (int i = 0; i < positives.counts.length; i++) {
+			seen += positives.counts[i];
+			if (seen >= rank) {
+				return clamp(bucketValue(positives.offset + i));
+			}
+		}
+		return max;
+	}
+
+	private static double bucketValue(int bucket) {   // - The middle of the bucket, which is within half a bucket of every number in it.
+		if (bucket == 0) {   // - Zero, and numbers too small to tell from it.
+			return 0;
+		}
+		if (bucket == INFINITE_BUCKET) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return Double.longBitsToDouble((long) bucket << SHIFT | 1L << (SHIFT - 1));
+	}
+
+	private double clamp(double value) {   // - The middle of the first or last bucket can be past the numbers that were really added.
+		return Math.max(min, Math.min(max, value));
+	}
+
+
+	// getters
+	public long getCount() {
+		return count;
+	}
+
+	public long getNotNumbers() {   // - NaNs that were added, which aren't counted in anything else.
+		return notNumbers;
+	}
+
+	public double getSum() {
+		return sum + compensation;
+	}
+
+	public double getMean() {   // - The sum divided by the count, unless the sum is too big for a double and the running mean isn't.
+		if (count == 0) {
+			return Double.NaN;
+		}
+		double total = getSum();
+		if (Double.isInfinite(total) && Double.isFinite(shift + mean)) {
+			return shift + mean;
+		}
+		return total / count;
+	}
+
+	public double getMin() {   // - Not a number if nothing was added, like the rest.
+		return count == 0 ? Double.NaN : min;
+	}
+
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	public double getVariance() {   // - The population variance, of exactly the numbers that were added.
+		return count == 0 ? Double.NaN : Math.max(0, squares / count);
+	}
+
+	public double getSampleVariance() {   // - The variance of a bigger population the numbers are a sample of, divided by count - 1.
+		return count < 2 ? Double.NaN : Math.max(0, squares / (count - 1));
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	public double getSampleStandardDeviation() {
+		return Math.sqrt(getSampleVariance());
+	}
+
+
+	// reset method
+	public void reset() {
+		count = 0;
+		notNumbers = 0;
+		sum = 0;
+		compensation = 0;
+		shift = 0;
+		mean = 0;
+		squares = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		positives.clear();
+		negatives.clear();
+	}
+
+}
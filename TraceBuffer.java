@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * Records what the calculator does, without slowing it down, and writes it out on a background thread.
+ *
+ * A trace event is a few numbers, not text: the time, the kind of event, the key or operator, and up to three doubles.
+ * They are written into a ring buffer of longs that's made once, so tracing an event creates nothing and never waits
+ * for the console or a file. A background thread takes the events out of the buffer in order, turns them into lines of
+ * text and writes them. If the buffer is full because the writer can't keep up, new events are dropped and counted
+ * instead of making the calculator wait.
+ *
+ * Any number of threads can trace into the same buffer. Each event claims its slot with a compare-and-set, fills it,
+ * and then publishes it by writing its sequence number, which is what the background thread waits for.
+ *
+ * The level can be changed while the program runs. When an event's level is off, tracing it costs one volatile read.
+ *
+ */
+
+public class TraceBuffer implements AutoCloseable {
+
+	// levels
+	public enum Level {
+		OFF,
+		CALCULATIONS,   // - Every answer that's calculated, with its numbers.
+		KEYS;   // - Every key that's pressed, as well as calculations.
+	}
+
+
+	// event types
+	static final int CALCULATION = 1;
+	static final int KEY = 2;
+
+
+	// fields
+	private static final int RECORD_LONGS = 5;   // - Each record is time, type and key, and three doubles as their bits.
+	private static final long IDLE_PARK_NANOS = 1_000_000;   // - How long the writer waits when the buffer is empty.
+
+	private final int capacity;   // - Records in the buffer. A power of two, so a sequence number becomes a slot with a mask.
+	private final long[] records;
+	private final AtomicLongArray published;   // - The sequence number of the record in each slot, once it's completely written.
+	private final AtomicLong claimed = new AtomicLong();   // - Sequence number of the next record to be written.
+	private final AtomicLong written = new AtomicLong();   // - Sequence number of the next record the writer takes out.
+	private final AtomicLong dropped = new AtomicLong();
+
+	private volatile Level level;
+	private volatile boolean closed;
+	private final Writer out;
+	private final Thread writer;
+
+
+	// constructor
+	public TraceBuffer(int capacity, Level level, Writer out) {   // - capacity is rounded up to a power of two.
+		this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.records = new long[this.capacity * RECORD_LONGS];
+		this.published = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			published.set(i, -1);
+		}
+		this.level = level;
+		this.out = out;
+		writer = new Thread(this::drain, "trace-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+
+	// level methods
+	public boolean isEnabled(Level eventLevel) {
+		return level.compareTo(eventLevel) >= 0;
+	}
+
+	public void setLevel(Level level) {
+		this.level = level;
+	}
+
+	public Level getLevel() {
+		return level;
+	}
+
+
+	// trace methods
+	public void calculation(int operator, double first, double second, double answer) {   // - operator is an index in OperatorRegistry.
+		if (isEnabled(Level.CALCULATIONS)) {
+			add(CALCULATION, operator, first, second, answer);
+		}
+	}
+
+	public void key(CalculatorEngine.Key key) {
+		if (isEnabled(Level.KEYS)) {
+			add(KEY, key.ordinal(), 0, 0, 0);
+		}
+	}
+
+	private void add(int type, int code, double a, double b, double c) {   // - code is the key's ordinal, or the operator's index for a calculation.
+		long sequence;
+		do {   // - Claim a slot, unless the writer hasn't taken out the record that's in it yet.
+			sequence = claimed.get();
+			if (sequence - written.get() >= capacity) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+
+		int slot = (int) sequence & (capacity - 1);
+		int offset = slot * RECORD_LONGS;
+		records[offset] = System.nanoTime();
+		records[offset + 1] = (long) type << 32 | code;
+		records[offset + 2] = Double.doubleToRawLongBits(a);
+		records[offset + 3] = Double.doubleToRawLongBits(b);
+		records[offset + 4] = Double.doubleToRawLongBits(c);
+		published.set(slot, sequence);   // - A volatile write, so the writer sees the whole record once it sees this.
+	}
+
+
+	// drain method
+	private void drain() {   // - Runs on the writer thread until the buffer is closed and empty.
+		StringBuilder line = new StringBuilder();
+		CalculatorEngine.Key[] keys = CalculatorEngine.Key.values();
+		boolean unflushed = false;
+		while (true) {
+			long sequence = written.get();
+			int slot = (int) sequence & (capacity - 1);
+			if (published.get(slot) != sequence) {   // - Nothing new yet.
+				if (unflushed) {
+					flush();
+					unflushed = false;
+				}
+				if (closed && claimed.get() == sequence) {
+					return;
+				}
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+				continue;
+			}
+
+			int offset = slot * RECORD_LONGS;
+			long time = records[offset];
+			int type = (int) (records[offset + 1] >>> 32);
+			int code = (int) records[offset + 1];
+			double a = Double.longBitsToDouble(records[offset + 2]);
+			double b = Double.longBitsToDouble(records[offset + 3]);
+			double c = Double.longBitsToDouble(records[offset + 4]);
+			written.set(sequence + 1);   // - The slot can be used again now that everything is copied out of it.
+
+			line.setLength(0);
+			line.append(time).append(' ');
+			if (type == CALCULATION) {
+				line.append("calculation ").append(OperatorRegistry.get(code).getName()).append(" first ").append(a).append(" second ").append(b).append(" answer ").append(c);
+			}
+			else {
+				line.append("key ").append(keys[code]);
+			}
+			line.append('\n');
+			try {
+				out.append(line);
+			}
+			catch (IOException e) {   // - Tracing stops, but the calculator doesn't.
+				level = Level.OFF;
+			}
+			unflushed = true;
+		}
+	}
+
+	private void flush() {
+		try {
+			out.flush();
+		}
+		catch (IOException e) {
+			level = Level.OFF;
+		}
+	}
+
+
+	// getters
+	public long getDropped() {   // - Events that didn't fit in the buffer.
+		return dropped.get();
+	}
+
+
+	// close method
+	public void close() throws IOException {   // - Waits for the writer to write everything that was traced, then closes out.
+		closed = true;
+		try {
+			writer.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		out.close();
+	}
+
+}
@@ -0,0 +1,99 @@
+import java.util.Random;
+
+/**
+ *
+ * Compares AnswerFormatter with the old way of formatting answers, which was Double.toString
+ * (or long + "" for whole numbers).
+ *
+ * Both are timed on the same answers: whole numbers, answers with a few decimals, and answers of divisions and
+ * square roots that use all 17 digits. Run it from the project folder with
+ *   javac -d out *.java benchmarks/*.java && java -cp out AnswerFormatterBenchmark
+ *
+ */
+
+public class AnswerFormatterBenchmark {
+
+	// fields
+	private static final int ANSWERS = 1 << 16;   // - Number of different answers that are formatted in each round.
+	private static final int ROUNDS = 200;
+
+
+	// main method
+	public static void main(String[] args) {
+		double[] answers = createAnswers(new Random(42));
+		AnswerFormatter formatter = new AnswerFormatter();
+
+		for (int warmup = 0; warmup < 5; warmup++) {   // - Give the JIT a chance to compile both before timing.
+			formatWithFormatter(formatter, answers);
+			formatWithToString(answers);
+		}
+
+		long start = System.nanoTime();
+		long check = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			check += formatWithFormatter(formatter, answers);
+		}
+		long formatterTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int round = 0; round < ROUNDS; round++) {
+			check += formatWithToString(answers);
+		}
+		long toStringTime = System.nanoTime() - start;
+
+		double operations = (double) ANSWERS * ROUNDS;
+		System.out.printf("AnswerFormatter:  %.1f ns/answer%n", formatterTime / operations);
+		System.out.printf("Double.toString:  %.1f ns/answer%n", toStringTime / operations);
+		System.out.println("(check " + check + ")");   // - Printed so the loops can't be optimized away.
+	}
+
+
+	// create answers method
+	private static double[] createAnswers(Random random) {
+		double[] answers = new double[ANSWERS];
+		for (int i = 0; i < answers.length; i++) {
+			switch (i % 4) {
+			case 0:
+				answers[i] = random.nextInt(1000000);   // - Whole numbers.
+				break;
+			case 1:
+				answers[i] = random.nextInt(1000000) / 100.0;   // - Money-like answers.
+				break;
+			case 2:
+				answers[i] = random.nextInt(1000) / (double) (1 + random.nextInt(1000));   // - Divisions.
+				break;
+			default:
+				answers[i] = Math.sqrt(random.nextInt(1000000));   // - Square roots.
+				break;
+			}
+		}
+		return answers;
+	}
+
+
+	// format methods
+	private static long formatWithFormatter(AnswerFormatter formatter, double[] answers) {
+		long total = 0;
+		for (double answer : answers) {
+			total += formatter.format(answer);
+		}
+		return total;
+	}
+
+	private static long formatWithToString(double[] answers) {
+		long total = 0;
+		for (double answer : answers) {
+			long longAnswer = (long) answer;
+			String text;
+			if (longAnswer == answer) {
+				text = longAnswer + "";
+			}
+			else {
+				text = answer + "";
+			}
+			total += text.length();
+		}
+		return total;
+	}
+
+}
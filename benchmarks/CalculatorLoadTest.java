@@ -0,0 +1,149 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ *
+ * Sends equations to a CalculatorServer from many clients at once, and prints the throughput and the latencies.
+ *
+ * Every client sends one equation, waits for the answer, and sends the next one, until the time is up. The clients
+ * don't have threads. Each one is a chain of asynchronous requests, so thousands of them can be simulated by one program.
+ * Every latency is kept, so the percentiles are exact. Start the server first, then run it from the project folder with
+ *   javac -d out *.java benchmarks/*.java
+ *   java -cp out Calculator --server
+ *   java -cp out CalculatorLoadTest [--clients n] [--seconds s] [--expressions] [--port p]
+ *
+ */
+
+public class CalculatorLoadTest {
+
+	// fields
+	private static final int EQUATIONS = 1024;   // - Different equations that are sent, made before the test starts.
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	private final HttpRequest[] requests = new HttpRequest[EQUATIONS];
+	private long deadline;   // - System.nanoTime() when clients stop sending.
+
+
+	// main method
+	public static void main(String[] args) throws Exception {
+		int clients = 1000;
+		int seconds = 10;
+		boolean expressions = false;
+		int port = CalculatorServer.DEFAULT_PORT;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--clients")) {
+				clients = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--seconds")) {
+				seconds = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--expressions")) {
+				expressions = true;
+			}
+			else if (args[i].equals("--port")) {
+				port = Integer.parseInt(args[++i]);
+			}
+		}
+		new CalculatorLoadTest(port, expressions).run(clients, seconds);
+	}
+
+
+	// constructor
+	private CalculatorLoadTest(int port, boolean expressions) {
+		URI uri = URI.create("http://localhost:" + port + (expressions ? "/expression" : "/keys"));
+		Random random = new Random(42);
+		for (int i = 0; i < requests.length; i++) {
+			String equation = random.nextInt(1000) + (expressions ? " + " : "+") + random.nextInt(1000) + (expressions ? " * " : "*") + (1 + random.nextInt(99));
+			requests[i] = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(equation)).build();
+		}
+	}
+
+
+	// run method
+	private void run(int clients, int seconds) {
+		deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		List<Client> started = new ArrayList<Client>();
+		CompletableFuture<?>[] finished = new CompletableFuture<?>[clients];
+		long start = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			Client c = new Client(i);
+			started.add(c);
+			finished[i] = c.done;
+			c.send();
+		}
+		CompletableFuture.allOf(finished).join();
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		int total = 0;
+		int errors = 0;
+		for (Client c : started) {
+			total += c.count;
+			errors += c.errors;
+		}
+		long[] latencies = new long[total];
+		int position = 0;
+		for (Client c : started) {
+			System.arraycopy(c.latencies, 0, latencies, position, c.count);
+			position += c.count;
+		}
+		Arrays.sort(latencies);
+
+		System.out.printf("%d clients, %d requests in %.1f s: %.0f requests/sec, %d errors%n", clients, total, elapsed, total / elapsed, errors);
+		if (total > 0) {
+			System.out.printf("latency p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms%n",
+					percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999), latencies[total - 1] / 1e6);
+		}
+	}
+
+
+	// percentile method
+	private static double percentile(long[] sorted, double fraction) {   // - In milliseconds.
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+		return sorted[Math.max(index, 0)] / 1e6;
+	}
+
+
+	// client
+	private class Client {
+
+		private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		private long[] latencies = new long[1024];   // - Nanoseconds. Only used by this client's chain, one request at a time.
+		private int count;
+		private int errors;
+		private int next;   // - Index of the next equation to send.
+
+		private Client(int number) {
+			next = number % EQUATIONS;
+		}
+
+		private void send() {
+			if (System.nanoTime() >= deadline) {
+				done.complete(null);
+				return;
+			}
+			long sent = System.nanoTime();
+			client.sendAsync(requests[next], HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+				long latency = System.nanoTime() - sent;
+				if (failure != null || response.statusCode() != 200) {
+					errors++;
+				}
+				else {
+					if (count == latencies.length) {
+						latencies = Arrays.copyOf(latencies, count * 2);
+					}
+					latencies[count++] = latency;
+				}
+				next = (next + 1) % EQUATIONS;
+				send();
+			});
+		}
+	}
+
+}
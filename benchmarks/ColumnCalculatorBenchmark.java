@@ -0,0 +1,77 @@
+import java.util.Random;
+
+/**
+ *
+ * Compares the vectorized and the plain ColumnCalculator on columns from a thousand to a hundred million doubles.
+ *
+ * Each size is timed for multiply by a number (like "column A * 1.2"), divide by another column, and square root.
+ * The vector kernel has to be compiled and the module added for the vectorized times, so run it with
+ *   javac -d out *.java benchmarks/*.java
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ *   java --add-modules jdk.incubator.vector -Xmx4g -cp out ColumnCalculatorBenchmark [max size]
+ * Three columns of a hundred million doubles need about 2.4 GB, so a smaller max size can be given instead.
+ *
+ */
+
+public class ColumnCalculatorBenchmark {
+
+	// fields
+	private static final long TARGET_ELEMENTS = 200_000_000L;   // - Each size is repeated until about this many elements are done, so small sizes are timed long enough.
+	private static final CalculatorEngine.Key[] KEYS = { CalculatorEngine.Key.MULTIPLY, CalculatorEngine.Key.DIVIDE, CalculatorEngine.Key.SQRT };
+
+
+	// main method
+	public static void main(String[] args) {
+		int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 100_000_000;
+		ColumnCalculator vector = new ColumnCalculator(true);
+		ColumnCalculator scalar = new ColumnCalculator(false);
+		if (!vector.isVectorized()) {
+			System.out.println("The Vector API isn't available, so both columns use the plain loops.");
+		}
+
+		System.out.printf("%12s %10s %14s %14s%n", "size", "operation", "vector ns/el", "scalar ns/el");
+		for (int size = 1000; size <= maxSize; size *= 10) {
+			double[] first = createColumn(new Random(size), size);
+			double[] second = createColumn(new Random(size + 1), size);
+			double[] answers = new double[size];
+			int rounds = (int) Math.max(1, TARGET_ELEMENTS / size);
+
+			for (CalculatorEngine.Key key : KEYS) {
+				for (int warmup = 0; warmup < 3; warmup++) {   // - Give the JIT a chance to compile both before timing.
+					run(vector, key, first, second, answers, Math.min(rounds, 100));
+					run(scalar, key, first, second, answers, Math.min(rounds, 100));
+				}
+				long vectorTime = run(vector, key, first, second, answers, rounds);
+				long scalarTime = run(scalar, key, first, second, answers, rounds);
+				double elements = (double) size * rounds;
+				System.out.printf("%12d %10s %14.3f %14.3f%n", size, key, vectorTime / elements, scalarTime / elements);
+			}
+		}
+	}
+
+
+	// run method
+	private static long run(ColumnCalculator calculator, CalculatorEngine.Key key, double[] first, double[] second, double[] answers, int rounds) {
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			if (key == CalculatorEngine.Key.DIVIDE) {
+				calculator.calculate(key, first, second, answers);
+			}
+			else {
+				calculator.calculate(key, first, 1.2, answers);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+
+	// create column method
+	private static double[] createColumn(Random random, int size) {
+		double[] column = new double[size];
+		for (int i = 0; i < size; i++) {
+			column[i] = random.nextInt(1000000) / 100.0;
+		}
+		return column;
+	}
+
+}
@@ -0,0 +1,33 @@
+package calculator.jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * Runs the benchmarks with JMH, like org.openjdk.jmh.Main, but writes the results to jmh-result.json and measures
+ * allocation with the gc profiler unless other options are given, so every run can be compared with the ones before it.
+ *
+ *   java -jar jmh/target/benchmarks.jar [JMH options] [benchmarks]
+ *
+ */
+
+public class Benchmarks {
+
+	// main method
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if (!options.contains("-rf")) {
+			options.addAll(Arrays.asList("-rf", "json"));
+			if (!options.contains("-rff")) {
+				options.addAll(Arrays.asList("-rff", "jmh-result.json"));
+			}
+		}
+		if (!options.contains("-prof") && !options.contains("-h") && !options.contains("-l")) {
+			options.addAll(Arrays.asList("-prof", "gc"));
+		}
+		org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+	}
+
+}
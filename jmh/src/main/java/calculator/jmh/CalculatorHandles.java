@@ -0,0 +1,137 @@
+package calculator.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.MathContext;
+import java.nio.file.Path;
+
+/**
+ *
+ * The calculator's methods, for the benchmarks.
+ *
+ * JMH only runs benchmarks that are in a package, and the calculator's classes are in the default package, which code
+ * in a package can't name. So the classes are loaded by name, and their methods are looked up once into static final
+ * MethodHandles. The JIT treats those as constants and inlines them, so calling one costs the same as calling the
+ * method directly. Every handle takes and returns Object instead of the calculator's types, so it's called with invokeExact.
+ *
+ * calculation() is private, so it's looked up with privateLookupIn, which works because the calculator and the
+ * benchmarks are both in the unnamed module.
+ *
+ */
+
+final class CalculatorHandles {
+
+	// classes
+	static final Class<?> ENGINE = load("CalculatorEngine");
+	static final Class<?> KEY = load("CalculatorEngine$Key");
+	static final Class<?> FORMATTER = load("AnswerFormatter");
+	static final Class<?> ACCUMULATOR = load("NumberAccumulator");
+	static final Class<?> RECORDING = load("SessionRecording");
+
+
+	// engine handles
+	static final MethodHandle NEW_ENGINE = constructor(ENGINE);   // - ()Object
+	static final MethodHandle PRESS = method(ENGINE, "press", void.class, KEY);   // - (Object engine, Object key)void
+	static final MethodHandle CALCULATION = privateMethod(ENGINE, "calculation", void.class);   // - (Object engine)void
+	static final MethodHandle SET_MATH_CONTEXT = method(ENGINE, "setMathContext", void.class, MathContext.class);
+	static final MethodHandle SET_UNDO_ENABLED = method(ENGINE, "setUndoEnabled", void.class, boolean.class);
+	static final MethodHandle GET_MAIN_DISPLAY = method(ENGINE, "getMainDisplay", load("DisplayText")).asType(MethodType.methodType(CharSequence.class, Object.class));
+	static final MethodHandle GET_PREVIOUS_DISPLAY = method(ENGINE, "getPreviousDisplay", load("DisplayText")).asType(MethodType.methodType(CharSequence.class, Object.class));
+	static final MethodHandle GET_ANSWER = method(ENGINE, "getAnswer", String.class);
+	static final MethodHandle KEY_FOR_CHAR = staticMethod(KEY, "forChar", KEY, char.class);   // - (char)Object
+
+
+	// formatter and accumulator handles
+	static final MethodHandle NEW_FORMATTER = constructor(FORMATTER);
+	static final MethodHandle FORMAT = method(FORMATTER, "format", int.class, double.class);   // - (Object formatter, double)int
+	static final MethodHandle NEW_ACCUMULATOR = constructor(ACCUMULATOR);
+	static final MethodHandle CLEAR = method(ACCUMULATOR, "clear", void.class);
+	static final MethodHandle APPEND = method(ACCUMULATOR, "append", void.class, char.class);
+	static final MethodHandle DOUBLE_VALUE = method(ACCUMULATOR, "doubleValue", double.class, CharSequence.class);
+
+
+	// recording handles
+	static final MethodHandle READ_RECORDING = staticMethod(RECORDING, "read", RECORDING, Path.class);   // - (Path)Object
+	static final MethodHandle TYPED_RECORDING = staticMethod(RECORDING, "typed", RECORDING, CharSequence.class);   // - (CharSequence)Object
+	static final MethodHandle REPLAY = method(RECORDING, "replay", void.class, ENGINE);   // - (Object recording, Object engine)void
+	static final MethodHandle RECORDING_SIZE = method(RECORDING, "size", int.class);
+
+
+	// constructor
+	private CalculatorHandles() {
+	}
+
+
+	// key method
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	static Object key(String name) {   // - A CalculatorEngine.Key, like key("ADD").
+		return Enum.valueOf((Class) KEY, name);
+	}
+
+
+	// lookup methods
+	private static Class<?> load(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException("The calculator isn't on the class path: " + name, e);
+		}
+	}
+
+	private static MethodHandle constructor(Class<?> type) {
+		try {
+			return erase(MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class)));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle method(Class<?> type, String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			return erase(MethodHandles.publicLookup().findVirtual(type, name, MethodType.methodType(returnType, parameterTypes)));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle staticMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			return erase(MethodHandles.publicLookup().findStatic(type, name, MethodType.methodType(returnType, parameterTypes)));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle privateMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+			return erase(lookup.findVirtual(type, name, MethodType.methodType(returnType, parameterTypes)));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle erase(MethodHandle handle) {   // - The calculator's types become Object, and everything else stays the same.
+		MethodType type = handle.type();
+		for (int i = 0; i < type.parameterCount(); i++) {
+			if (isCalculatorType(type.parameterType(i))) {
+				type = type.changeParameterType(i, Object.class);
+			}
+		}
+		if (isCalculatorType(type.returnType())) {
+			type = type.changeReturnType(Object.class);
+		}
+		return handle.asType(type);
+	}
+
+	private static boolean isCalculatorType(Class<?> type) {
+		return !type.isPrimitive() && type.getPackageName().isEmpty();
+	}
+
+}
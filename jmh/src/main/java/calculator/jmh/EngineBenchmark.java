@@ -0,0 +1,118 @@
+package calculator.jmh;
+
+import static calculator.jmh.CalculatorHandles.*;
+
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *
+ * The engine's work for one key: calculating an answer, clear entry and all clear, and a typed key from start to end.
+ *
+ * Every benchmark leaves the engine the way it found it, so each operation does the same work. That's why clear entry
+ * is measured together with the digit it takes back, and all clear together with the short equation it clears.
+ * Undo is off, because its snapshots would pile up over millions of operations.
+ *
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+	// keys
+	private static final Object ONE = key("ONE");
+	private static final Object TWO = key("TWO");
+	private static final Object SEVEN = key("SEVEN");
+	private static final Object ADD = key("ADD");
+	private static final Object DELETE = key("DELETE");
+	private static final Object CLEAR = key("CLEAR");
+
+
+	// states
+	@State(Scope.Thread)
+	public static class Equation {   // - "1234.5 x 678.9" typed, with the answer not calculated yet.
+
+		@Param({"double", "decimal"})
+		public String mode;
+
+		Object engine;
+
+		@Setup
+		public void setUp() throws Throwable {
+			engine = (Object) NEW_ENGINE.invokeExact();
+			MathContext mathContext = mode.equals("decimal") ? MathContext.DECIMAL128 : null;
+			SET_MATH_CONTEXT.invokeExact(engine, mathContext);
+			type(engine, "1234.5*678.9");
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Dispatch {   // - Typed equations, one char at a time, like the keyboard bindings of the window.
+
+		char[] typed = "12.5*3-4/2=7+81r=^9-1.25=".toCharArray();
+		int next;
+		Object engine;
+
+		@Setup
+		public void setUp() throws Throwable {
+			engine = (Object) NEW_ENGINE.invokeExact();
+		}
+	}
+
+
+	// benchmarks
+	@Benchmark
+	public void calculation(Equation equation) throws Throwable {   // - Only the calculation, which equals and the operators call.
+		CALCULATION.invokeExact(equation.engine);
+	}
+
+	@Benchmark
+	public void clearEntry(Equation equation) throws Throwable {   // - A digit and the clear entry that deletes it.
+		PRESS.invokeExact(equation.engine, SEVEN);
+		PRESS.invokeExact(equation.engine, DELETE);
+	}
+
+	@Benchmark
+	public void allClear(Equation equation) throws Throwable {   // - "1 + 2" and all clear, which leaves the engine like new.
+		Object engine = equation.engine;
+		PRESS.invokeExact(engine, CLEAR);
+		PRESS.invokeExact(engine, ONE);
+		PRESS.invokeExact(engine, ADD);
+		PRESS.invokeExact(engine, TWO);
+	}
+
+	@Benchmark
+	public void keyDispatch(Dispatch dispatch, Blackhole blackhole) throws Throwable {   // - What a key binding does: find the key for the char, press it, and get the texts the labels show.
+		char c = dispatch.typed[dispatch.next];
+		dispatch.next = dispatch.next + 1 == dispatch.typed.length ? 0 : dispatch.next + 1;
+		Object key = (Object) KEY_FOR_CHAR.invokeExact(c);
+		PRESS.invokeExact(dispatch.engine, key);
+		blackhole.consume((CharSequence) GET_MAIN_DISPLAY.invokeExact(dispatch.engine));
+		blackhole.consume((CharSequence) GET_PREVIOUS_DISPLAY.invokeExact(dispatch.engine));
+	}
+
+
+	// type method
+	static void type(Object engine, String typed) throws Throwable {
+		for (int i = 0; i < typed.length(); i++) {
+			PRESS.invokeExact(engine, (Object) KEY_FOR_CHAR.invokeExact(typed.charAt(i)));
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package calculator.jmh;
+
+import static calculator.jmh.CalculatorHandles.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Turning numbers into text and text into numbers: AnswerFormatter against Double.toString, and a number typed into
+ * a NumberAccumulator against Double.parseDouble on the whole text.
+ *
+ * Each operation takes the next of a few thousand numbers, so the branch predictor can't learn them. The answers are
+ * whole numbers, money-like answers and answers with all 17 digits, like in benchmarks/AnswerFormatterBenchmark.
+ *
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntryBenchmark {
+
+	// fields
+	private static final int NUMBERS = 1 << 12;   // - A power of two, so the next one is found with a mask.
+
+	private final double[] answers = new double[NUMBERS];
+	private final String[] typed = new String[NUMBERS];   // - The same numbers as they'd be typed.
+	private int next;
+	private Object formatter;
+	private Object accumulator;
+
+
+	// setup method
+	@Setup
+	public void setUp() throws Throwable {
+		Random random = new Random(42);
+		for (int i = 0; i < NUMBERS; i++) {
+			switch (i % 3) {
+			case 0:
+				answers[i] = random.nextInt(1000000);
+				break;
+			case 1:
+				answers[i] = random.nextInt(1000000) / 100.0;
+				break;
+			default:
+				answers[i] = random.nextInt(1000000) / 7.0;
+				break;
+			}
+			typed[i] = Double.toString(answers[i]);
+		}
+		formatter = (Object) NEW_FORMATTER.invokeExact();
+		accumulator = (Object) NEW_ACCUMULATOR.invokeExact();
+	}
+
+
+	// formatting benchmarks
+	@Benchmark
+	public int formatAnswer() throws Throwable {
+		return (int) FORMAT.invokeExact(formatter, answers[next++ & (NUMBERS - 1)]);
+	}
+
+	@Benchmark
+	public String formatWithToString() {   // - The old way, for comparison.
+		return Double.toString(answers[next++ & (NUMBERS - 1)]);
+	}
+
+
+	// entry benchmarks
+	@Benchmark
+	public double typeNumber() throws Throwable {   // - The digits one at a time, like the engine gets them, then the value.
+		String number = typed[next++ & (NUMBERS - 1)];
+		CLEAR.invokeExact(accumulator);
+		for (int i = 0; i < number.length(); i++) {
+			APPEND.invokeExact(accumulator, number.charAt(i));
+		}
+		return (double) DOUBLE_VALUE.invokeExact(accumulator, (CharSequence) number);
+	}
+
+	@Benchmark
+	public double parseNumber() {   // - The old way, for comparison.
+		return Double.parseDouble(typed[next++ & (NUMBERS - 1)]);
+	}
+
+}
@@ -0,0 +1,97 @@
+package calculator.jmh;
+
+import static calculator.jmh.CalculatorHandles.*;
+
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Replays a whole session, recorded in the window with --record=file, on a new engine with undo on, like the window's.
+ *
+ * The recording is given with -p recording=file. Without one, a session of about 1000 typed keys is made up from
+ * random equations, so the benchmark always has something to replay. The score is sessions per second, so scores are only
+ * comparable for the same recording.
+ *
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionReplayBenchmark {
+
+	// fields
+	private static final int TYPED_KEYS = 1000;
+
+	@Param({""})
+	public String recording;
+
+	private Object session;
+
+
+	// setup method
+	@Setup
+	public void setUp() throws Throwable {
+		if (recording.isEmpty()) {
+			session = (Object) TYPED_RECORDING.invokeExact((CharSequence) typedSession(new Random(42)));
+		}
+		else {
+			session = (Object) READ_RECORDING.invokeExact(Paths.get(recording));
+		}
+		System.out.println("Replaying " + (int) RECORDING_SIZE.invokeExact(session) + " events");
+	}
+
+	private static String typedSession(Random random) {   // - Numbers and operators, with some clear entries, all clears and undos.
+		String digits = "0123456789.";
+		String operators = "+-*/=^r";
+		StringBuilder typed = new StringBuilder();
+		while (typed.length() < TYPED_KEYS) {
+			int length = 1 + random.nextInt(6);
+			for (int i = 0; i < length; i++) {
+				typed.append(digits.charAt(random.nextInt(digits.length())));
+			}
+			switch (random.nextInt(20)) {
+			case 0:
+				typed.append('\b');   // - Backspace, clear entry.
+				break;
+			case 1:
+				typed.append('\u001B');   // - Escape, all clear.
+				break;
+			case 2:
+				typed.append("\u001A\u001A\u0019");   // - Ctrl+Z twice and Ctrl+Y.
+				break;
+			default:
+				typed.append(operators.charAt(random.nextInt(operators.length())));
+				break;
+			}
+		}
+		return typed.toString();
+	}
+
+
+	// benchmark
+	@Benchmark
+	public Object replay() throws Throwable {
+		Object engine = (Object) NEW_ENGINE.invokeExact();
+		SET_UNDO_ENABLED.invokeExact(engine, true);
+		REPLAY.invokeExact(session, engine);
+		return engine;
+	}
+
+}
@@ -0,0 +1,54 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ *
+ * An example plug-in operator: the base 10 logarithm of the number, like "log(1000) = 3", typed with "l".
+ *
+ * It's unary, so it's calculated right away, like square root. It only has a double answer, so in decimal and exact
+ * mode it shows Math.log10's answer.
+ *
+ */
+
+public class LogOperator implements CalculatorOperator {
+
+	// fields
+	private static final MethodHandle HANDLE = handle();
+
+
+	// handle method
+	private static MethodHandle handle() {
+		try {
+			return MethodHandles.lookup().findStatic(Math.class, "log10", MethodType.methodType(double.class, double.class));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	// description
+	public String getName() {
+		return "LOG";
+	}
+
+	public String getText() {
+		return "log";
+	}
+
+	public String getTypedChars() {
+		return "lL";
+	}
+
+	public boolean isUnary() {
+		return true;
+	}
+
+
+	// calculation
+	public MethodHandle getHandle() {
+		return HANDLE;
+	}
+
+}
@@ -0,0 +1,70 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ *
+ * An example plug-in operator: the remainder of dividing the first number by the second, like "17 mod 5 = 2", typed
+ * with "%". The remainder has the sign of the first number, like Java's %. Anything mod 0 is "Error".
+ *
+ */
+
+public class ModuloOperator implements CalculatorOperator {
+
+	// fields
+	private static final MethodHandle HANDLE = handle();
+
+
+	// handle method
+	private static MethodHandle handle() {
+		try {
+			return MethodHandles.lookup().findStatic(ModuloOperator.class, "modulo", MethodType.methodType(double.class, double.class, double.class));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static double modulo(double first, double second) {
+		return first % second;
+	}
+
+
+	// description
+	public String getName() {
+		return "MOD";
+	}
+
+	public String getText() {
+		return "mod";
+	}
+
+	public String getTypedChars() {
+		return "%";
+	}
+
+	public boolean isUnary() {
+		return false;
+	}
+
+
+	// calculation
+	public MethodHandle getHandle() {
+		return HANDLE;
+	}
+
+	public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+		if (first == null || second == null || second.signum() == 0) {   // - Infinity or "Error", or mod 0.
+			return null;
+		}
+		try {
+			return first.remainder(second, mathContext);
+		}
+		catch (ArithmeticException e) {   // - The whole part of the division has more digits than the precision.
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ *
+ * An example plug-in operator: the first number to the power of the second, like "2 ^ 10 = 1024".
+ *
+ * It's binary, so it's calculated like add: on equals or the next operator. "^" is already typed for square, so this
+ * operator is only pressed with its button. Whole powers are calculated with BigDecimal in decimal mode, and exactly in
+ * exact mode up to MAX_EXACT_POWER, so "1/3 ^ 2" is 1/9. Other powers use Math.pow.
+ *
+ */
+
+public class PowerOperator implements CalculatorOperator {
+
+	// fields
+	private static final int MAX_DECIMAL_POWER = 9999;   // - Bigger powers would be slow, and almost always overflow.
+	private static final int MAX_EXACT_POWER = 64;
+
+	private static final MethodHandle HANDLE = handle();
+
+
+	// handle method
+	private static MethodHandle handle() {
+		try {
+			return MethodHandles.lookup().findStatic(Math.class, "pow", MethodType.methodType(double.class, double.class, double.class));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	// description
+	public String getName() {
+		return "POW";
+	}
+
+	public String getText() {
+		return "^";
+	}
+
+	public boolean isUnary() {
+		return false;
+	}
+
+
+	// calculation
+	public MethodHandle getHandle() {
+		return HANDLE;
+	}
+
+	public BigDecimal decimal(BigDecimal first, BigDecimal second, MathContext mathContext) {
+		if (first == null || second == null) {   // - Infinity or "Error".
+			return null;
+		}
+		if (second.signum() != 0 && second.stripTrailingZeros().scale() > 0 || second.abs().compareTo(BigDecimal.valueOf(MAX_DECIMAL_POWER)) > 0) {   // - Not a whole power, or too big.
+			return null;
+		}
+		if (first.signum() == 0 && second.signum() < 0) {   // - Infinity, like Math.pow.
+			return null;
+		}
+		return first.pow(second.intValue(), mathContext);
+	}
+
+	public boolean exact(Rational answer, Rational first, Rational second) {
+		if (first == null || second == null) {
+			return false;
+		}
+		double power = second.doubleValue();
+		if (power != Math.rint(power) || Math.abs(power) > MAX_EXACT_POWER) {
+			return false;
+		}
+		Rational whole = new Rational();
+		whole.setDecimal((long) power, 0);
+		if (!whole.equals(second)) {   // - A fraction that's only close to a whole number.
+			return false;
+		}
+		Rational result = new Rational();
+		result.setDecimal(1, 0);
+		for (int i = 0; i < Math.abs(power); i++) {
+			if (!result.multiply(result, first)) {
+				return false;
+			}
+		}
+		if (power < 0) {
+			Rational one = new Rational();
+			one.setDecimal(1, 0);
+			if (!result.divide(one, result)) {
+				return false;
+			}
+		}
+		answer.set(result);
+		return true;
+	}
+
+}
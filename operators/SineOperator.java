@@ -0,0 +1,69 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ *
+ * An example plug-in operator: the sine of an angle in degrees, like "sin(30) = 0.5", typed with "s".
+ *
+ * The handle is Math.sin with Math.toRadians in front of it (MethodHandles.filterArguments), so it's still one handle
+ * the JIT can inline. Angles that are whole multiples of 30 degrees with a simple sine give exactly 0, 0.5 or 1, instead
+ * of numbers like 0.49999999999999994 for sin(30) or 1.2E-16 for sin(180).
+ *
+ */
+
+public class SineOperator implements CalculatorOperator {
+
+	// fields
+	private static final double[] EXACT_SINES = {0, 0.5, Double.NaN, 1, Double.NaN, 0.5, 0, -0.5, Double.NaN, -1, Double.NaN, -0.5};   // - By multiples of 30 degrees. NaN where the sine isn't a fraction, like sin(60).
+	private static final MethodHandle HANDLE = handle();
+
+
+	// handle method
+	private static MethodHandle handle() {
+		try {
+			MethodType type = MethodType.methodType(double.class, double.class);
+			MethodHandle sin = MethodHandles.lookup().findStatic(Math.class, "sin", type);
+			MethodHandle toRadians = MethodHandles.lookup().findStatic(Math.class, "toRadians", type);
+			MethodHandle exact = MethodHandles.lookup().findStatic(SineOperator.class, "exactSine", MethodType.methodType(double.class, double.class, double.class));
+			return MethodHandles.foldArguments(exact, 0, MethodHandles.filterArguments(sin, 0, toRadians));   // - (degrees) -> exactSine(sin(toRadians(degrees)), degrees)
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static double exactSine(double sine, double degrees) {   // - The exact sine of a whole multiple of 30 degrees that has one, or sine.
+		double steps = degrees / 30;
+		if (steps != Math.rint(steps) || Math.abs(steps) > 1L << 52) {
+			return sine;
+		}
+		double exact = EXACT_SINES[(int) Math.floorMod((long) steps, 12L)];
+		return exact != exact ? sine : exact;
+	}
+
+
+	// description
+	public String getName() {
+		return "SIN";
+	}
+
+	public String getText() {
+		return "sin";
+	}
+
+	public String getTypedChars() {
+		return "sS";
+	}
+
+	public boolean isUnary() {
+		return true;
+	}
+
+
+	// calculation
+	public MethodHandle getHandle() {
+		return HANDLE;
+	}
+
+}
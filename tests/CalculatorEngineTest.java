@@ -0,0 +1,47 @@
+import java.math.MathContext;
+
+/**
+ *
+ * Checks key sequences that used to throw an exception from CalculatorEngine.press(), in double, decimal and exact mode.
+ * Run it from the project folder with
+ *   javac -d out *.java tests/*.java && java -cp out CalculatorEngineTest
+ * It prints "OK", or throws an AssertionError with the keys and what the display showed.
+ *
+ */
+
+public class CalculatorEngineTest {
+
+	// main method
+	public static void main(String[] args) {
+		CalculatorEngine exact = new CalculatorEngine();
+		exact.setExact(true);
+		check(exact, "2/7+\b0", "0");   // - Backspace deletes the "+", which leaves the answer "2/7" as the first number. A digit starts a new one.
+		check(exact, "2/7+\b5+1=", "6");
+
+		CalculatorEngine decimal = new CalculatorEngine();
+		decimal.setMathContext(MathContext.DECIMAL64);
+		check(decimal, "1/3+\b.5", "0.33333333333333335");   // - The first number "0.3333333333333333" already has a decimal point, so the new one is ignored and the 5 is typed onto it.
+
+		CalculatorEngine doubles = new CalculatorEngine();
+		check(doubles, "99999999999^^+\b7", "7");   // - "9.999999999600002E43" isn't plain either.
+		check(doubles, "1/0+\b7", "7");   // - Nor is infinity.
+		check(doubles, "99999999999^^\b", "0");   // - Clear entry doesn't cut an answer like "9.999999999600002E43" down to "9.999999999600002E4", and then "9.999999999600002E", which isn't a number.
+		check(doubles, "99999999999^^\b\b", "0");
+		check(doubles, "1/3+\b.5", "0.33333333333333335");
+		check(doubles, "1/3+\b.5.", "0.33333333333333335");
+		System.out.println("OK");
+	}
+
+
+	// check method
+	private static void check(CalculatorEngine engine, String typed, String expected) {   // - Presses the keys for typed, after clear, and checks the main display.
+		engine.press(CalculatorEngine.Key.CLEAR);
+		for (char c : typed.toCharArray()) {
+			engine.press(c == '\b' ? CalculatorEngine.Key.DELETE : CalculatorEngine.Key.forChar(c));
+		}
+		if (!engine.getMainText().equals(expected)) {
+			throw new AssertionError(typed.replace("\b", "<delete>") + ": " + engine.getMainText() + " instead of " + expected);
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+/**
+ *
+ * Checks that CalculatorMetrics counts an engine's keys and operations, and that reset() sets every count back to zero
+ * while it's registered over JMX. Run it from the project folder with
+ *   javac -d out *.java tests/*.java && java -cp out CalculatorMetricsTest
+ * It prints "OK", or throws an AssertionError that says which count was wrong.
+ *
+ */
+
+public class CalculatorMetricsTest {
+
+	// main method
+	public static void main(String[] args) throws Exception {
+		CalculatorMetrics metrics = new CalculatorMetrics();
+		metrics.register();
+		CalculatorEngine engine = new CalculatorEngine();
+		engine.setMetrics(metrics);
+		for (char c : "12/0=3*4=9r2^".toCharArray()) {
+			engine.press(CalculatorEngine.Key.forChar(c));
+		}
+		check("divides", metrics.getDivides(), 1);
+		check("multiplies", metrics.getMultiplies(), 1);
+		check("square roots", metrics.getSquareRoots(), 1);
+		check("squares", metrics.getSquares(), 1);
+		check("divide by zeros", metrics.getDivideByZeros(), 1);
+		check("equals", metrics.getEquals(), 2);
+
+		metrics.reset();
+		check("key presses after reset", metrics.getKeyPresses(), 0);
+		check("divides after reset", metrics.getDivides(), 0);
+		check("multiplies after reset", metrics.getMultiplies(), 0);
+		check("square roots after reset", metrics.getSquareRoots(), 0);
+		check("squares after reset", metrics.getSquares(), 0);
+		check("divide by zeros after reset", metrics.getDivideByZeros(), 0);
+		check("evaluations after reset", metrics.getEvaluations(), 0);
+		check("registered divides after reset", (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(CalculatorMetrics.NAME), "Divides"), 0);
+		System.out.println("OK");
+	}
+
+
+	// check method
+	private static void check(String name, long actual, long expected) {
+		if (actual != expected) {
+			throw new AssertionError(name + ": " + actual + " instead of " + expected);
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *
+ * A ColumnKernel that uses the Vector API, so each step works on as many doubles as the processor's SIMD registers hold
+ * (4 with AVX2, 8 with AVX-512).
+ *
+ * The Vector API is still an incubator module, so this class is in its own folder and is compiled separately with
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ * and run with "java --add-modules jdk.incubator.vector". ColumnCalculator loads it by name and uses ScalarColumnKernel
+ * when it isn't there.
+ *
+ */
+
+class VectorColumnKernel implements ColumnKernel {
+
+	// fields
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;   // - The widest vectors the processor supports.
+
+
+	// columns method
+	public void columns(CalculatorEngine.Key key, double[] first, double[] second, double[] answers, int length) {
+		int bound = SPECIES.loopBound(length);   // - Whole vectors up to here, then the last few elements one at a time.
+		switch (key) {
+		case DIVIDE:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).div(DoubleVector.fromArray(SPECIES, second, i)).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] / second[i];
+			}
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).mul(DoubleVector.fromArray(SPECIES, second, i)).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] * second[i];
+			}
+			break;
+		case ADD:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).add(DoubleVector.fromArray(SPECIES, second, i)).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] + second[i];
+			}
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).sub(DoubleVector.fromArray(SPECIES, second, i)).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] - second[i];
+			}
+			break;
+		default:
+			scalar(key, first, 0, answers, length);
+			break;
+		}
+	}
+
+
+	// scalar method
+	public void scalar(CalculatorEngine.Key key, double[] first, double second, double[] answers, int length) {
+		int bound = SPECIES.loopBound(length);
+		DoubleVector seconds = DoubleVector.broadcast(SPECIES, second);   // - second in every lane.
+		switch (key) {
+		case DIVIDE:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).div(seconds).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] / second;
+			}
+			break;
+		case MULTIPLY:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).mul(seconds).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] * second;
+			}
+			break;
+		case ADD:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).add(seconds).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] + second;
+			}
+			break;
+		case SUBTRACT:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).sub(seconds).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] - second;
+			}
+			break;
+		case SQUARE:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector v = DoubleVector.fromArray(SPECIES, first, i);
+				v.mul(v).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = first[i] * first[i];
+			}
+			break;
+		case SQRT:
+			for (int i = 0; i < bound; i += SPECIES.length()) {
+				DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.SQRT).intoArray(answers, i);
+			}
+			for (int i = bound; i < length; i++) {
+				answers[i] = Math.sqrt(first[i]);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException(key + " isn't an operation");
+		}
+	}
+
+}